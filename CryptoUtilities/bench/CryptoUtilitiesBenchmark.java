@@ -0,0 +1,241 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * JMH benchmarks for the hot paths of {@code CryptoUtilities}, parameterized
+ * by operand bit length. Operands are drawn from a fixed seed, and the random
+ * source of {@code CryptoUtilities} is reseeded for every trial, so runs are
+ * comparable across changes to the arithmetic engines.
+ *
+ * <p>
+ * Compile src, bench and the components library with the JMH core and
+ * annotation-processor jars on the classpath, then run this class's main
+ * method (which adds the GC profiler, reporting allocation rate next to
+ * throughput), or run {@code org.openjdk.jmh.Main CryptoUtilitiesBenchmark
+ * -prof gc}.
+ *
+ * @author Kierra Smith
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoUtilitiesBenchmark {
+
+    /**
+     * Seed for operands and for the random source of CryptoUtilities.
+     */
+    private static final long SEED = 20_241_017L;
+
+    /**
+     * Bit length of the operands.
+     */
+    @Param({ "64", "128", "256", "512", "1024", "2048", "4096" })
+    private int bits;
+
+    /**
+     * Random base for powerMod, below the modulus.
+     */
+    private NaturalNumber base;
+
+    /**
+     * Random exponent for powerMod.
+     */
+    private NaturalNumber exponent;
+
+    /**
+     * Odd modulus for powerMod.
+     */
+    private NaturalNumber modulus;
+
+    /**
+     * Second random operand for reduceToGCD.
+     */
+    private NaturalNumber other;
+
+    /**
+     * Likely prime, the most expensive input for the primality tests.
+     */
+    private NaturalNumber prime;
+
+    /**
+     * Random even starting point for generateNextLikelyPrime.
+     */
+    private NaturalNumber start;
+
+    /**
+     * Operand generator.
+     */
+    private SplittableRandom random;
+
+    /**
+     * Returns a random number of exactly the given bit length.
+     *
+     * @param length
+     *            number of bits
+     * @return a random number in [2^(length-1), 2^length)
+     */
+    private NaturalNumber randomOfLength(int length) {
+        NaturalNumber top = new NaturalNumber2(2);
+        top.power(length - 1);
+        NaturalNumber bound = new NaturalNumber2(top);
+        bound.decrement();
+        NaturalNumber result = CryptoUtilities.randomNumber(bound,
+                this.random);
+        result.add(top);
+        return result;
+    }
+
+    /**
+     * Draws the operands for one trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.random = new SplittableRandom(SEED);
+        CryptoUtilities.setRandomSource(new SplittableRandom(SEED));
+        this.modulus = this.randomOfLength(this.bits);
+        if (CryptoUtilities.isEven(this.modulus)) {
+            this.modulus.increment();
+        }
+        this.base = CryptoUtilities.randomNumber(this.modulus, this.random);
+        this.exponent = this.randomOfLength(this.bits);
+        this.other = this.randomOfLength(this.bits);
+        this.prime = this.randomOfLength(this.bits);
+        CryptoUtilities.generateNextLikelyPrime(this.prime);
+        this.start = this.randomOfLength(this.bits);
+        if (!CryptoUtilities.isEven(this.start)) {
+            this.start.increment();
+        }
+    }
+
+    /**
+     * Benchmarks powerMod with an exponent as long as the modulus.
+     *
+     * @return the power, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber powerMod() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        CryptoUtilities.powerMod(n, this.exponent, this.modulus);
+        return n;
+    }
+
+    /**
+     * Benchmarks powerModFixedBase with the same base, exponent and modulus as
+     * powerMod; the table is built by the first call of the trial.
+     *
+     * @return the power, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber powerModFixedBase() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        CryptoUtilities.powerModFixedBase(n, this.exponent, this.modulus);
+        return n;
+    }
+
+    /**
+     * Benchmarks reduceToGCD on two random operands.
+     *
+     * @return the GCD, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber reduceToGCD() {
+        NaturalNumber n = new NaturalNumber2(this.base);
+        NaturalNumber m = new NaturalNumber2(this.other);
+        CryptoUtilities.reduceToGCD(n, m);
+        return n;
+    }
+
+    /**
+     * Benchmarks isPrime1 on a likely prime.
+     *
+     * @return the verdict, so it is not optimized away
+     */
+    @Benchmark
+    public boolean isPrime1() {
+        return CryptoUtilities.isPrime1(this.prime);
+    }
+
+    /**
+     * Benchmarks isPrime2 on a likely prime (all rounds run).
+     *
+     * @return the verdict, so it is not optimized away
+     */
+    @Benchmark
+    public boolean isPrime2() {
+        return CryptoUtilities.isPrime2(this.prime);
+    }
+
+    /**
+     * Benchmarks isPrime2 in Baillie-PSW mode on a likely prime, for
+     * comparison with isPrime2.
+     *
+     * @return the verdict, so it is not optimized away
+     */
+    @Benchmark
+    public boolean isPrime2BailliePsw() {
+        return CryptoUtilities.isPrime2(this.prime, PrimalityMode.BAILLIE_PSW);
+    }
+
+    /**
+     * Benchmarks generateNextLikelyPrime from a random even start.
+     *
+     * @return the prime found, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber generateNextLikelyPrime() {
+        NaturalNumber n = new NaturalNumber2(this.start);
+        CryptoUtilities.generateNextLikelyPrime(n);
+        return n;
+    }
+
+    /**
+     * Benchmarks randomNumber with a bound as long as the modulus.
+     *
+     * @return the random number, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber randomNumber() {
+        return CryptoUtilities.randomNumber(this.modulus);
+    }
+
+    /**
+     * Runs every benchmark in this class with the GC profiler.
+     *
+     * @param args
+     *            the command line arguments: not used
+     * @throws RunnerException
+     *             if JMH fails to run the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CryptoUtilitiesBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+
+}
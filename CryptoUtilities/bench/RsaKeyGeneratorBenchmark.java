@@ -0,0 +1,137 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH throughput benchmarks, in keys per second, for RSA key generation: the
+ * worker-pool pipeline of {@code RsaKeyGenerator} at several pool sizes, and
+ * (in {@link OneShot}, which has no pool size to vary) the one-shot
+ * {@code RsaKeyGenerator.generate}. The pipeline's queue holds a single key,
+ * so the measured rate is the rate at which the workers produce keys rather
+ * than the rate at which a full queue can be drained.
+ *
+ * <p>
+ * Run this class's main method, or run {@code org.openjdk.jmh.Main
+ * RsaKeyGeneratorBenchmark}; see {@code CryptoUtilitiesBenchmark} for the
+ * classpath.
+ *
+ * @author Kierra Smith
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RsaKeyGeneratorBenchmark {
+
+    /**
+     * Bit length of the modulus.
+     */
+    @Param({ "1024", "2048" })
+    private int bits;
+
+    /**
+     * Number of worker threads of the pipeline.
+     */
+    @Param({ "1", "2", "4", "8" })
+    private int workers;
+
+    /**
+     * The pipeline under test.
+     */
+    private RsaKeyGenerator generator;
+
+    /**
+     * Starts the pipeline for one trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.generator = new RsaKeyGenerator(this.bits, this.workers, 1);
+        this.generator.start();
+    }
+
+    /**
+     * Stops the pipeline at the end of a trial.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.generator.close();
+    }
+
+    /**
+     * Benchmarks taking key pairs from the pipeline.
+     *
+     * @return the key pair, so it is not optimized away
+     * @throws InterruptedException
+     *             if interrupted while waiting for a key pair
+     */
+    @Benchmark
+    public RsaKeyPair pipeline() throws InterruptedException {
+        return this.generator.take();
+    }
+
+    /**
+     * Benchmark of the one-shot generator, in a state of its own so that it
+     * runs once per bit length rather than once per pool size.
+     */
+    @State(Scope.Thread)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 5, time = 10)
+    @Fork(1)
+    public static class OneShot {
+
+        /**
+         * Bit length of the modulus.
+         */
+        @Param({ "1024", "2048" })
+        private int bits;
+
+        /**
+         * Benchmarks generating one key pair at a time, with p and q searched
+         * for in parallel.
+         *
+         * @return the key pair, so it is not optimized away
+         */
+        @Benchmark
+        public RsaKeyPair generate() {
+            return RsaKeyGenerator.generate(this.bits);
+        }
+
+    }
+
+    /**
+     * Runs every benchmark in this class.
+     *
+     * @param args
+     *            the command line arguments: not used
+     * @throws RunnerException
+     *             if JMH fails to run the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RsaKeyGeneratorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,111 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * JMH throughput benchmarks for RSA private-key operations: the full-modulus
+ * {@code CryptoUtilities.powerMod} against the CRT path of
+ * {@code CryptoUtilities.powerModCrt}. One key is generated per trial.
+ *
+ * <p>
+ * Run this class's main method, or run {@code org.openjdk.jmh.Main
+ * RsaPrivateOperationBenchmark}; see {@code CryptoUtilitiesBenchmark} for the
+ * classpath.
+ *
+ * @author Kierra Smith
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RsaPrivateOperationBenchmark {
+
+    /**
+     * Bit length of the modulus.
+     */
+    @Param({ "1024", "2048", "4096" })
+    private int bits;
+
+    /**
+     * The key pair.
+     */
+    private RsaKeyPair pair;
+
+    /**
+     * Ciphertext, just below the modulus.
+     */
+    private NaturalNumber ciphertext;
+
+    /**
+     * Generates the key pair for one trial.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.pair = RsaKeyGenerator.generate(this.bits);
+        this.ciphertext = this.pair.modulus();
+        this.ciphertext.decrement();
+        this.ciphertext.decrement();
+    }
+
+    /**
+     * Benchmarks the private-key operation with the full modulus.
+     *
+     * @return the plaintext, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber fullModulus() {
+        NaturalNumber m = new NaturalNumber2(this.ciphertext);
+        CryptoUtilities.powerMod(m, this.pair.privateExponent(),
+                this.pair.modulus());
+        return m;
+    }
+
+    /**
+     * Benchmarks the private-key operation through the CRT parameters.
+     *
+     * @return the plaintext, so it is not optimized away
+     */
+    @Benchmark
+    public NaturalNumber crt() {
+        NaturalNumber m = new NaturalNumber2(this.ciphertext);
+        this.pair.privateOperation(m);
+        return m;
+    }
+
+    /**
+     * Runs every benchmark in this class.
+     *
+     * @param args
+     *            the command line arguments: not used
+     * @throws RunnerException
+     *             if JMH fails to run the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RsaPrivateOperationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
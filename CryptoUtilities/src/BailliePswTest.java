@@ -0,0 +1,313 @@
+import java.util.Arrays;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * The Baillie-PSW probable-prime test: a strong test to base 2 followed by a
+ * strong Lucas test with Selfridge's parameters (D the first of 5, -7, 9,
+ * -11, ... with Jacobi symbol (D/n) = -1, P = 1, Q = (1 - D) / 4). No
+ * composite is known to pass both, and the whole test costs about as much as
+ * three strong tests, against fifty for the random-base mode of
+ * {@code CryptoUtilities.isPrime2}.
+ *
+ * <p>
+ * The Lucas sequences are computed in Montgomery form with the context of the
+ * strong test, so a test keeps scratch buffers and must not be shared between
+ * threads.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class BailliePswTest {
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Useful constant, not a magic number: 4.
+     */
+    private static final int FOUR = 4;
+
+    /**
+     * Useful constant, not a magic number: 5.
+     */
+    private static final int FIVE = 5;
+
+    /**
+     * Useful constant, not a magic number: 8.
+     */
+    private static final int EIGHT = 8;
+
+    /**
+     * Magnitude of D after which n is checked for being a perfect square (for
+     * which no D has (D/n) = -1).
+     */
+    private static final int SQUARE_CHECK = 61;
+
+    /**
+     * Strong test for n, whose context is used for all the arithmetic.
+     */
+    private final StrongProbablePrimeTest strong;
+
+    /**
+     * Context for n.
+     */
+    private final MontgomeryContext context;
+
+    /**
+     * The number being tested.
+     */
+    private final NaturalNumber n;
+
+    /**
+     * Constructor.
+     *
+     * @param strong
+     *            strong test for n
+     * @param n
+     *            the number to test
+     * @requires n > 3 and n is odd and strong is a test for n
+     */
+    BailliePswTest(StrongProbablePrimeTest strong, NaturalNumber n) {
+        this.strong = strong;
+        this.context = strong.context();
+        this.n = new NaturalNumber2(n);
+    }
+
+    /**
+     * Returns n mod k.
+     *
+     * @param k
+     *            small modulus
+     * @return n mod k
+     * @requires k > 0
+     */
+    private int remainder(int k) {
+        int[] m = this.context.modulusLimbs();
+        long r = 0;
+        for (int i = m.length - 1; i >= 0; i--) {
+            r = ((r << NaturalNumberLimbs.LIMB_BITS)
+                    | (m[i] & NaturalNumberLimbs.MASK)) % k;
+        }
+        return (int) r;
+    }
+
+    /**
+     * Returns the Jacobi symbol (a/b).
+     *
+     * @param a
+     *            top
+     * @param b
+     *            bottom
+     * @return (a/b), one of -1, 0 and 1
+     * @requires a >= 0 and b > 0 and b is odd
+     */
+    static int jacobi(int a, int b) {
+        int x = a % b;
+        int y = b;
+        int result = 1;
+        while (x != 0) {
+            while (x % 2 == 0) {
+                x /= 2;
+                int r = y % EIGHT;
+                if (r == THREE || r == FIVE) {
+                    result = -result;
+                }
+            }
+            int t = x;
+            x = y;
+            y = t;
+            if (x % FOUR == THREE && y % FOUR == THREE) {
+                result = -result;
+            }
+            x %= y;
+        }
+        if (y != 1) {
+            result = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Jacobi symbol (D/n) for a small D.
+     *
+     * @param d
+     *            the top, D
+     * @return (D/n)
+     * @requires D odd and |D| > 1
+     */
+    private int jacobiOfN(int d) {
+        /*
+         * (|D|/n) = (n/|D|) unless both are 3 mod 4 (reciprocity), and
+         * (-1/n) = -1 iff n is 3 mod 4
+         */
+        int magnitude = Math.abs(d);
+        int nMod4 = this.remainder(FOUR);
+        int result = jacobi(this.remainder(magnitude), magnitude);
+        if (magnitude % FOUR == THREE && nMod4 == THREE) {
+            result = -result;
+        }
+        if (d < 0 && nMod4 == THREE) {
+            result = -result;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n is a perfect square.
+     *
+     * @return true iff n = r^2 for some r
+     */
+    private boolean isSquare() {
+        NaturalNumber root = new NaturalNumber2(this.n);
+        root.root(2);
+        NaturalNumber square = new NaturalNumber2(root);
+        square.multiply(root);
+        return square.equals(this.n);
+    }
+
+    /**
+     * Returns a small signed number mod n, in Montgomery form.
+     *
+     * @param value
+     *            the number
+     * @return value * R mod n
+     * @requires |value| < n
+     */
+    private int[] residue(int value) {
+        int[] a = new int[this.context.size()];
+        a[0] = Math.abs(value);
+        this.context.toMontgomery(a, a);
+        if (value < 0) {
+            this.context.subtract(new int[a.length], a, a);
+        }
+        return a;
+    }
+
+    /**
+     * Halves a mod n in place (n odd, so a / 2 is (a + n) / 2 when a is odd).
+     *
+     * @param a
+     *            residue, less than n
+     */
+    private void half(int[] a) {
+        final long mask = NaturalNumberLimbs.MASK;
+        final int shift = NaturalNumberLimbs.LIMB_BITS;
+        int[] m = this.context.modulusLimbs();
+        long carry = 0;
+        if ((a[0] & 1) == 1) {
+            for (int j = 0; j < a.length; j++) {
+                long s = (a[j] & mask) + (m[j] & mask) + carry;
+                a[j] = (int) s;
+                carry = s >>> shift;
+            }
+        }
+        for (int j = 0; j < a.length; j++) {
+            long high = (j + 1 < a.length) ? a[j + 1] & mask : carry;
+            a[j] = (int) (((high << shift) | (a[j] & mask)) >>> 1);
+        }
+    }
+
+    /**
+     * Strong Lucas test with parameters P = 1, Q and D = 1 - 4Q: writing
+     * n + 1 = d * 2^s, n passes iff U_d = 0 or V_(d * 2^r) = 0 for some
+     * 0 <= r < s (mod n).
+     *
+     * @param d
+     *            the discriminant D, with (D/n) = -1
+     * @return true iff n is a strong Lucas probable prime
+     */
+    private boolean isStrongLucasProbablePrime(int d) {
+        if (OperationCounters.ENABLED) {
+            OperationCounters.current().witnessRounds++;
+        }
+        MontgomeryContext c = this.context;
+        int k = c.size();
+        int q = (1 - d) / FOUR;
+        int[] bigD = this.residue(d);
+        int[] bigQ = this.residue(q);
+        int[] exponent = Arrays.copyOf(c.modulusLimbs(), k + 1);
+        NaturalNumberLimbs.addSmall(exponent, 1);
+        int s = NaturalNumberLimbs.lowestSetBit(exponent);
+        exponent = NaturalNumberLimbs.shiftRight(exponent, s);
+        /*
+         * Left-to-right over the bits of d, starting from index 1: U_1 = 1,
+         * V_1 = P = 1, Q^1 = Q
+         */
+        int[] u = c.one().clone();
+        int[] v = c.one().clone();
+        int[] qk = bigQ.clone();
+        int[] t = new int[k];
+        for (int i = NaturalNumberLimbs.bitLength(exponent) - 2; i >= 0; i--) {
+            /*
+             * U_2k = U_k V_k, V_2k = V_k^2 - 2Q^k, Q^2k = (Q^k)^2
+             */
+            c.multiply(u, v, u);
+            c.multiply(v, v, v);
+            c.add(qk, qk, t);
+            c.subtract(v, t, v);
+            c.multiply(qk, qk, qk);
+            if (NaturalNumberLimbs.testBit(exponent, i)) {
+                /*
+                 * U_2k+1 = (U_2k + V_2k) / 2, V_2k+1 = (D U_2k + V_2k) / 2
+                 */
+                c.multiply(bigD, u, t);
+                c.add(u, v, u);
+                this.half(u);
+                c.add(t, v, v);
+                this.half(v);
+                c.multiply(qk, bigQ, qk);
+            }
+        }
+        boolean passes = NaturalNumberLimbs.isZero(u)
+                || NaturalNumberLimbs.isZero(v);
+        for (int r = 1; r < s && !passes; r++) {
+            c.multiply(v, v, v);
+            c.add(qk, qk, t);
+            c.subtract(v, t, v);
+            c.multiply(qk, qk, qk);
+            passes = NaturalNumberLimbs.isZero(v);
+        }
+        return passes;
+    }
+
+    /**
+     * Reports whether n is a Baillie-PSW probable prime.
+     *
+     * @return true means n is very likely prime (no counterexample is
+     *         known); false means n is definitely composite
+     */
+    boolean isProbablePrime() {
+        boolean isPrime = !this.strong.isWitness(2);
+        if (isPrime) {
+            int d = FIVE;
+            int symbol = this.jacobiOfN(d);
+            boolean square = false;
+            while (symbol == 1 && !square) {
+                d = (d > 0) ? -(d + 2) : -(d - 2);
+                if (Math.abs(d) == SQUARE_CHECK) {
+                    square = this.isSquare();
+                }
+                symbol = this.jacobiOfN(d);
+            }
+            if (square) {
+                isPrime = false;
+            } else if (symbol == 0) {
+                /*
+                 * |D| shares a factor with n; since every smaller odd |D|
+                 * was prime to n, n is prime only if it is |D| itself
+                 */
+                int[] m = this.context.modulusLimbs();
+                isPrime = NaturalNumberLimbs.significantLength(m) == 1
+                        && m[0] == Math.abs(d);
+            } else {
+                isPrime = this.isStrongLucasProbablePrime(d);
+            }
+        }
+        return isPrime;
+    }
+
+}
@@ -0,0 +1,127 @@
+import java.util.BitSet;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Segmented sieve over the odd numbers starting at some odd base, used by
+ * {@code generateNextLikelyPrime} to hand only candidates free of small
+ * factors to the probabilistic test. The base is reduced modulo each prime of
+ * {@code SmallPrimePrefilter} once; after that each window of
+ * {@link #WINDOW} odd offsets is sieved with word-sized arithmetic only, and
+ * the residues are carried forward from one window to the next.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class CandidateSieve {
+
+    /**
+     * Number of odd offsets sieved per window.
+     */
+    static final int WINDOW = 4096;
+
+    /**
+     * Base of the current window: candidate i of the window is base + 2i.
+     */
+    private final NaturalNumber base;
+
+    /**
+     * base mod SmallPrimePrefilter.prime(j), for every j.
+     */
+    private final int[] residues;
+
+    /**
+     * Bit i set iff base + 2i has a small prime factor.
+     */
+    private final BitSet composite;
+
+    /**
+     * Offset of the next candidate to examine in the current window.
+     */
+    private int cursor;
+
+    /**
+     * Constructor.
+     *
+     * @param start
+     *            first number to consider
+     * @requires start is odd and start > [largest prime in
+     *           SmallPrimePrefilter]
+     */
+    CandidateSieve(NaturalNumber start) {
+        assert start != null : "Violation of: start is not null";
+        this.base = new NaturalNumber2(start);
+        this.residues = new int[SmallPrimePrefilter.PRIME_COUNT];
+        int[] limbs = NaturalNumberLimbs.fromNaturalNumber(start);
+        assert (limbs[0] & 1) == 1 : "Violation of: start is odd";
+        SmallPrimePrefilter.residues(limbs, this.residues);
+        this.composite = new BitSet(WINDOW);
+        this.sieve();
+    }
+
+    /**
+     * Reports the smallest number a sieve should start at.
+     *
+     * @return one more than the largest prime used for sieving
+     */
+    static int threshold() {
+        return SmallPrimePrefilter.prime(SmallPrimePrefilter.PRIME_COUNT - 1)
+                + 1;
+    }
+
+    /**
+     * Marks every offset i of the current window for which some small prime p
+     * divides base + 2i, i.e., i = -base / 2 (mod p).
+     */
+    private void sieve() {
+        this.composite.clear();
+        for (int j = 0; j < this.residues.length; j++) {
+            long p = SmallPrimePrefilter.prime(j);
+            long halfInverse = (p + 1) / 2;
+            long first = ((p - this.residues[j]) % p) * halfInverse % p;
+            for (long i = first; i < WINDOW; i += p) {
+                this.composite.set((int) i);
+            }
+        }
+        this.cursor = 0;
+    }
+
+    /**
+     * Moves to the next window, carrying the residues forward.
+     */
+    private void advance() {
+        final int step = 2 * WINDOW;
+        this.base.add(new NaturalNumber2(step));
+        for (int j = 0; j < this.residues.length; j++) {
+            this.residues[j] = (this.residues[j] + step)
+                    % SmallPrimePrefilter.prime(j);
+        }
+        this.sieve();
+    }
+
+    /**
+     * Returns the next candidate, in increasing order, that no small prime
+     * divides.
+     *
+     * @return the next surviving candidate
+     */
+    NaturalNumber next() {
+        int i = this.composite.nextClearBit(this.cursor);
+        long skipped = 0;
+        while (i >= WINDOW) {
+            skipped += WINDOW - this.cursor;
+            this.advance();
+            i = this.composite.nextClearBit(0);
+        }
+        if (OperationCounters.ENABLED) {
+            OperationCounters.current().prefilterRejections += skipped + i
+                    - this.cursor;
+        }
+        this.cursor = i + 1;
+        NaturalNumber candidate = new NaturalNumber2(this.base);
+        candidate.add(new NaturalNumber2(2 * i));
+        return candidate;
+    }
+
+}
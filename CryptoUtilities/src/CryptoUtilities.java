@@ -1,7 +1,14 @@
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import components.naturalnumber.NaturalNumber;
 import components.naturalnumber.NaturalNumber2;
-import components.random.Random;
-import components.random.Random1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -27,12 +34,74 @@ public final class CryptoUtilities {
     private static final int THREE = 3;
 
     /**
-     * Pseudo-random number generator.
+     * Most decimal digits in a nonnegative int.
+     */
+    private static final int INT_DIGITS = 10;
+
+    /**
+     * Most decimal digits of a number that is routed to the single-word
+     * (long) fast path; 10^18 < 2^63.
      */
-    private static final Random GENERATOR = new Random1L();
+    private static final int WORD_DIGITS = 18;
 
     /**
-     * Returns a random number uniformly distributed in the interval [0, n].
+     * 10^WORD_DIGITS, the bound of the single-word fast path.
+     */
+    private static final long WORD_LIMIT = 1_000_000_000_000_000_000L;
+
+    /**
+     * Number of random bases tried by isPrime2 above the deterministic range.
+     */
+    private static final int WITNESS_ROUNDS = 50;
+
+    /**
+     * Bit length up to which DETERMINISTIC_BASES decide primality exactly.
+     */
+    private static final int DETERMINISTIC_BITS = 64;
+
+    /**
+     * Strong-test bases with no strong pseudoprime in common below
+     * 318665857834031151167461 (more than 2^64).
+     */
+    private static final int[] DETERMINISTIC_BASES = { 2, 3, 5, 7, 11, 13, 17,
+        19, 23, 29, 31, 37 };
+
+    /**
+     * Bit length of the larger prime from which powerModCrt computes its two
+     * half-size powers on separate threads.
+     */
+    private static final int CRT_PARALLEL_BITS = 512;
+
+    /**
+     * Memory budget of the shared fixed-base table cache, in bytes.
+     */
+    private static final long FIXED_BASE_CACHE_BYTES = 32L << 20;
+
+    /**
+     * Fixed-base tables shared by powerModFixedBase.
+     */
+    private static final FixedBaseCache FIXED_BASE_CACHE = new FixedBaseCache(
+            FIXED_BASE_CACHE_BYTES);
+
+    /**
+     * Random source installed by setRandomSource, or null for the default.
+     */
+    private static volatile RandomGenerator sharedSource = null;
+
+    /**
+     * Prime cache installed by setPrimeCache, or null for none.
+     */
+    private static volatile PrimeCache primeCache = null;
+
+    /**
+     * Per-thread random streams for the batch primality checks.
+     */
+    private static final ThreadLocal<SplittableRandom> WORKER_RANDOM =
+            ThreadLocal.withInitial(SplittableRandom::new);
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n],
+     * drawn from the current random source (see {@link #setRandomSource}).
      *
      * @param n
      *            top end of interval
@@ -43,41 +112,81 @@ public final class CryptoUtilities {
      * </pre>
      */
     public static NaturalNumber randomNumber(NaturalNumber n) {
+        return randomNumber(n, randomSource());
+    }
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n],
+     * drawn from the given source.
+     *
+     * @param n
+     *            top end of interval
+     * @param source
+     *            source of random bits
+     * @return random number in interval
+     * @updates source
+     * @requires n > 0
+     * @ensures <pre>
+     * randomNumber = [a random number uniformly distributed in [0, n]]
+     * </pre>
+     */
+    public static NaturalNumber randomNumber(NaturalNumber n,
+            RandomGenerator source) {
         assert !n.isZero() : "Violation of: n > 0";
-        final int base = 10;
-        NaturalNumber result;
-        int d = n.divideBy10();
-        if (n.isZero()) {
-            /*
-             * Incoming n has only one digit and it is d, so generate a random
-             * number uniformly distributed in [0, d]
-             */
-            int x = (int) ((d + 1) * GENERATOR.nextDouble());
-            result = new NaturalNumber2(x);
-            n.multiplyBy10(d);
-        } else {
-            /*
-             * Incoming n has more than one digit, so generate a random number
-             * (NaturalNumber) uniformly distributed in [0, n], and another
-             * (int) uniformly distributed in [0, 9] (i.e., a random digit)
-             */
-            result = randomNumber(n);
-            int lastDigit = (int) (base * GENERATOR.nextDouble());
-            result.multiplyBy10(lastDigit);
-            n.multiplyBy10(d);
-            if (result.compareTo(n) > 0) {
-                /*
-                 * In this case, we need to try again because generated number
-                 * is greater than n; the recursive call's argument is not
-                 * "smaller" than the incoming value of n, but this recursive
-                 * call has no more than a 90% chance of being made (and for
-                 * large n, far less than that), so the probability of
-                 * termination is 1
-                 */
-                result = randomNumber(n);
-            }
+        assert source != null : "Violation of: source is not null";
+
+        /*
+         * Fill as many whole 32-bit limbs as n has with random bits, masking
+         * the top one to the bit length of n, and try again in the (less than
+         * 50%) case that the result exceeds n
+         */
+        int[] bound = NaturalNumberLimbs.fromNaturalNumber(n);
+        int[] result = new int[bound.length];
+        NaturalNumberLimbs.uniform(bound, source, result);
+        return NaturalNumberLimbs.toNaturalNumber(result);
+    }
+
+    /**
+     * Replaces the random source used by randomNumber and the primality tests
+     * (and to seed the per-call streams of isPrime2Parallel), e.g., with a
+     * seeded generator for reproducible runs. A source that is not
+     * thread-safe, such as {@code SplittableRandom}, must only be installed
+     * while a single thread uses this class.
+     *
+     * @param source
+     *            the new source, or null to go back to the default
+     *            {@code ThreadLocalRandom}
+     */
+    public static void setRandomSource(RandomGenerator source) {
+        sharedSource = source;
+    }
+
+    /**
+     * Installs a persistent cache that isPrime2 and generateNextLikelyPrime
+     * consult before testing numbers too large for one long word, and that
+     * their results are added to. {@code RsaKeyGenerator} bypasses the cache:
+     * its secret primes are never written to it, nor handed out from it. So
+     * do the isPrime2Batch checks.
+     *
+     * @param cache
+     *            the cache, or null to stop using one
+     */
+    public static void setPrimeCache(PrimeCache cache) {
+        primeCache = cache;
+    }
+
+    /**
+     * Returns the random source currently in use.
+     *
+     * @return the installed source, or the calling thread's
+     *         {@code ThreadLocalRandom} if none is installed
+     */
+    private static RandomGenerator randomSource() {
+        RandomGenerator source = sharedSource;
+        if (source == null) {
+            source = ThreadLocalRandom.current();
         }
-        return result;
+        return source;
     }
 
     /**
@@ -94,24 +203,82 @@ public final class CryptoUtilities {
     public static void reduceToGCD(NaturalNumber n, NaturalNumber m) {
 
         /*
-         * Use Euclid's algorithm; in pseudocode: if m = 0 then GCD(n, m) = n
-         * else GCD(n, m) = GCD(m, n mod m)
+         * Binary GCD on one long word when both fit, otherwise binary GCD for
+         * moderate sizes and Lehmer's algorithm for large ones; either way the
+         * work is done on machine words, not by repeated NaturalNumber
+         * division
          */
-        //intialize variables
-        NaturalNumber remainder = new NaturalNumber2(0);
-        //while loop for if m and n are not equal to zero
-        while (!n.isZero() && !m.isZero()) {
-            remainder = n.divide(m);
-            n.copyFrom(remainder);
-            //implement the recursive call
-            reduceToGCD(m, remainder);
-            n.transferFrom(m);
+        long a = lowValue(n, WORD_DIGITS);
+        long b = lowValue(m, WORD_DIGITS);
+        if (a >= 0 && b >= 0) {
+            setFromLong(n, WordArithmetic.gcd(a, b));
+        } else {
+            int[] gcd = GcdEngine.gcd(NaturalNumberLimbs.fromNaturalNumber(n),
+                    NaturalNumberLimbs.fromNaturalNumber(m));
+            n.transferFrom(NaturalNumberLimbs.toNaturalNumber(gcd));
+        }
+        m.clear();
+    }
+
+    /**
+     * Replaces n by its inverse modulo m if it has one, and otherwise by the
+     * greatest common divisor of n and m; both come out of one pass of the
+     * extended Euclidean algorithm.
+     *
+     * @param n
+     *            number to invert
+     * @param m
+     *            the modulus
+     * @return true iff n has an inverse modulo m
+     * @updates n
+     * @requires m > 1
+     * @ensures <pre>
+     * if [greatest common divisor of #n and m] = 1
+     *  then (inverseMod = true  and  0 < n < m  and  (#n * n) mod m = 1)
+     *  else (inverseMod = false  and  n = [greatest common divisor of #n and m])
+     * </pre>
+     */
+    public static boolean inverseMod(NaturalNumber n, NaturalNumber m) {
+        assert compareToInt(m, 1) > 0 : "Violation of: m > 1";
+        int[] x = NaturalNumberLimbs.fromNaturalNumber(n);
+        int[] y = NaturalNumberLimbs.fromNaturalNumber(m);
+        int[] inverse = GcdEngine.inverse(x, y);
+        boolean invertible = inverse != null;
+        if (invertible) {
+            n.transferFrom(NaturalNumberLimbs.toNaturalNumber(inverse));
+        } else {
+            n.transferFrom(NaturalNumberLimbs.toNaturalNumber(
+                    GcdEngine.gcd(x, y)));
         }
+        return invertible;
+    }
 
+    /**
+     * Sets n to the given value without going through a decimal string.
+     *
+     * @param n
+     *            the number to set
+     * @param value
+     *            the new value
+     * @replaces n
+     * @requires value >= 0
+     * @ensures n = value
+     */
+    private static void setFromLong(NaturalNumber n, long value) {
+        final int ten = 10;
+        if (value < ten) {
+            n.setFromInt((int) value);
+        } else {
+            setFromLong(n, value / ten);
+            n.multiplyBy10((int) (value % ten));
+        }
     }
 
     /**
-     * Reports whether n is even.
+     * Reports whether n is even. Reads the last decimal digit of n from
+     * n.toString(), so takes time and an allocation proportional to the
+     * number of digits of n; the primality tests instead test the low bit of
+     * the limbs they build anyway.
      *
      * @param n
      *            the number to be checked
@@ -119,13 +286,70 @@ public final class CryptoUtilities {
      * @ensures isEven = (n mod 2 = 0)
      */
     public static boolean isEven(NaturalNumber n) {
-        //initialize variables
-        NaturalNumber num = new NaturalNumber2(n);
-        NaturalNumber two = new NaturalNumber2(2);
-        //give test a value to return
-        NaturalNumber test = num.divide(two);
-        //return statement
-        return test.isZero();
+        /*
+         * Parity is decided by the last decimal digit alone
+         */
+        String digits = n.toString();
+        return (digits.charAt(digits.length() - 1) - '0') % 2 == 0;
+    }
+
+    /**
+     * Reports whether n is 1.
+     *
+     * @param n
+     *            the number to be checked
+     * @return true iff n = 1
+     * @ensures isOne = (n = 1)
+     */
+    public static boolean isOne(NaturalNumber n) {
+        return compareToInt(n, 1) == 0;
+    }
+
+    /**
+     * Compares n with a small int without creating a {@code NaturalNumber}
+     * for it. Reads n through n.toString(), so takes time and an allocation
+     * proportional to the number of digits of n.
+     *
+     * @param n
+     *            the number to be compared
+     * @param k
+     *            the int to compare it with
+     * @return negative, zero or positive as n is less than, equal to or
+     *         greater than k
+     * @requires k >= 0
+     * @ensures <pre>
+     * compareToInt = [negative if n < k, 0 if n = k, positive if n > k]
+     * </pre>
+     */
+    public static int compareToInt(NaturalNumber n, int k) {
+        assert k >= 0 : "Violation of: k >= 0";
+        long value = lowValue(n, INT_DIGITS);
+        int result = 1;
+        if (value >= 0) {
+            result = Long.compare(value, k);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of n if it has at most the given number of digits,
+     * and -1 otherwise. Reads n through n.toString(), so takes time and an
+     * allocation proportional to the number of digits of n.
+     *
+     * @param n
+     *            the number to be examined
+     * @param digits
+     *            largest number of digits to read
+     * @return n if n < 10^digits, else -1
+     * @ensures lowValue = [n if n < 10^digits, else -1]
+     */
+    private static long lowValue(NaturalNumber n, int digits) {
+        String value = n.toString();
+        long result = -1;
+        if (value.length() <= digits) {
+            result = Long.parseLong(value);
+        }
+        return result;
     }
 
     /**
@@ -143,37 +367,173 @@ public final class CryptoUtilities {
      */
     public static void powerMod(NaturalNumber n, NaturalNumber p,
             NaturalNumber m) {
-        assert m.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: m > 1";
+        assert compareToInt(m, 1) > 0 : "Violation of: m > 1";
 
         /*
-         * Use the fast-powering algorithm as previously discussed in class,
-         * with the additional feature that every multiplication is followed
-         * immediately by "reducing the result modulo m"
+         * Operands that all fit in a long word take the word-sized path;
+         * otherwise odd moduli (every modulus that matters for RSA) go
+         * through the Montgomery engine, and even ones use iterative
+         * square-and-multiply with a reduction after each step
          */
-        //intialize variables
-        NaturalNumber num = new NaturalNumber2(n);
-        NaturalNumber power = new NaturalNumber2(p);
-
-        //if power is zero give n value of 1
-        if (power.isZero()) {
-            n.transferFrom(new NaturalNumber2(1));
-            //if power is even run else if
-        } else if (isEven(power)) {
-            power.divide(new NaturalNumber2(2));
-            //recursive call
-            powerMod(n, power, m);
-            n.multiply(new NaturalNumber2(n));
-            n.transferFrom(n.divide(m));
-            //if neither are true run else statement
+        long base = lowValue(n, WORD_DIGITS);
+        long exponent = lowValue(p, WORD_DIGITS);
+        long modulus = lowValue(m, WORD_DIGITS);
+        if (base >= 0 && exponent >= 0 && modulus >= 0) {
+            setFromLong(n, WordArithmetic.powerMod(base, exponent, modulus));
+        } else if (isEven(m)) {
+            powerModEvenModulus(n, p, m);
+        } else {
+            new MontgomeryContext(m).powerMod(n, p);
+        }
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, like powerMod, but keeps a table
+     * of precomputed powers of n for m, so later calls with the same n and m
+     * skip most of the work. Worth it when one base (a generator, or a fixed
+     * witness such as 2) is raised to many exponents modulo the same m; the
+     * tables live in a shared least-recently-used cache of bounded size (see
+     * {@link #fixedBaseCache()}).
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1
+     * @ensures n = #n ^ (p) mod m
+     */
+    public static void powerModFixedBase(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m) {
+        assert compareToInt(m, 1) > 0 : "Violation of: m > 1";
+        if (isEven(m)) {
+            powerModEvenModulus(n, p, m);
+        } else {
+            FIXED_BASE_CACHE.powerMod(n, p, m);
+        }
+    }
+
+    /**
+     * Returns the cache of fixed-base tables used by powerModFixedBase, e.g.,
+     * to read its hit counts or to clear it.
+     *
+     * @return the shared cache
+     */
+    public static FixedBaseCache fixedBaseCache() {
+        return FIXED_BASE_CACHE;
+    }
+
+    /**
+     * Updates n to its p-th power modulo an even modulus m, scanning the bits
+     * of p from the most significant end.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1
+     * @ensures n = #n ^ (p) mod m
+     */
+    private static void powerModEvenModulus(NaturalNumber n, NaturalNumber p,
+            NaturalNumber m) {
+        NaturalNumber base = new NaturalNumber2(n);
+        base = base.divide(m);
+        int[] exponent = NaturalNumberLimbs.fromNaturalNumber(p);
+        NaturalNumber result = new NaturalNumber2(1);
+        NaturalNumber square = new NaturalNumber2();
+        for (int i = NaturalNumberLimbs.bitLength(exponent) - 1; i >= 0; i--) {
+            square.copyFrom(result);
+            result.multiply(square);
+            result = result.divide(m);
+            if (NaturalNumberLimbs.testBit(exponent, i)) {
+                result.multiply(base);
+                result = result.divide(m);
+            }
+            if (OperationCounters.ENABLED) {
+                int steps = NaturalNumberLimbs.testBit(exponent, i) ? 2 : 1;
+                OperationCounters.current().multiplications += steps;
+                OperationCounters.current().reductions += steps;
+            }
+        }
+        n.transferFrom(result);
+    }
+
+    /**
+     * Updates n to its d-th power modulo p * q, given the Chinese-remainder
+     * form of d (as for an RSA private-key operation). The two powers modulo p
+     * and q use half-size moduli and exponents, and for large primes are
+     * computed on separate threads; Garner's formula then recombines them.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            first prime
+     * @param q
+     *            second prime
+     * @param dP
+     *            d mod (p - 1)
+     * @param dQ
+     *            d mod (q - 1)
+     * @param qInv
+     *            q^-1 mod p
+     * @updates n
+     * @requires <pre>
+     * p and q are distinct odd primes  and  n < p * q  and
+     * qInv * q mod p = 1
+     * </pre>
+     * @ensures n = #n ^ (d) mod (p * q), where dP = d mod (p - 1) and
+     *          dQ = d mod (q - 1)
+     */
+    public static void powerModCrt(NaturalNumber n, NaturalNumber p,
+            NaturalNumber q, NaturalNumber dP, NaturalNumber dQ,
+            NaturalNumber qInv) {
+        assert n != null : "Violation of: n is not null";
+        assert p != null : "Violation of: p is not null";
+        assert q != null : "Violation of: q is not null";
+        assert dP != null : "Violation of: dP is not null";
+        assert dQ != null : "Violation of: dQ is not null";
+        assert qInv != null : "Violation of: qInv is not null";
+
+        /*
+         * m1 = n^dP mod p and m2 = n^dQ mod q; the task computing m1 gets its
+         * own copies of everything it reads, since it may run on another
+         * thread
+         */
+        MontgomeryContext modP = new MontgomeryContext(p);
+        MontgomeryContext modQ = new MontgomeryContext(q);
+        NaturalNumber m1 = new NaturalNumber2(n);
+        NaturalNumber m2 = new NaturalNumber2(n);
+        NaturalNumber exponentP = new NaturalNumber2(dP);
+        int largerBits = Math.max(modP.size(), modQ.size())
+                * NaturalNumberLimbs.LIMB_BITS;
+        if (largerBits >= CRT_PARALLEL_BITS) {
+            CompletableFuture<Void> half = CompletableFuture
+                    .runAsync(() -> modP.powerMod(m1, exponentP));
+            modQ.powerMod(m2, dQ);
+            half.join();
         } else {
-            power.divide(new NaturalNumber2(2));
-            //recursive call
-            powerMod(n, power, m);
-            n.multiply(new NaturalNumber2(n));
-            n.multiply(num);
-            n.transferFrom(n.divide(m));
+            modP.powerMod(m1, exponentP);
+            modQ.powerMod(m2, dQ);
         }
 
+        /*
+         * Garner: n = m2 + q * (qInv * (m1 - m2) mod p)
+         */
+        NaturalNumber m2ModP = new NaturalNumber2(m2);
+        m2ModP = m2ModP.divide(p);
+        NaturalNumber h = new NaturalNumber2(m1);
+        h.add(p);
+        h.subtract(m2ModP);
+        h.multiply(qInv);
+        h = h.divide(p);
+        h.multiply(q);
+        h.add(m2);
+        n.transferFrom(h);
     }
 
     /**
@@ -194,28 +554,22 @@ public final class CryptoUtilities {
      */
     public static boolean isWitnessToCompositeness(NaturalNumber w,
             NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(2)) > 0 : "Violation of: n > 2";
-        assert (new NaturalNumber2(1)).compareTo(w) < 0 : "Violation of: 1 < w";
+        assert compareToInt(n, 2) > 0 : "Violation of: n > 2";
+        assert compareToInt(w, 1) > 0 : "Violation of: 1 < w";
         n.decrement();
         assert w.compareTo(n) < 0 : "Violation of: w < n - 1";
         n.increment();
 
         //initialize variables
-        boolean isComposite = false;
         NaturalNumber num = new NaturalNumber2(n);
         NaturalNumber witness = new NaturalNumber2(w);
-        NaturalNumber one = new NaturalNumber2(1);
-        NaturalNumber two = new NaturalNumber2(2);
 
         num.decrement();
-        powerMod(witness, two, n);
+        witness.multiply(w);
+        witness = witness.divide(n);
         powerMod(w, num, n);
-        // if statement if w is not equal to one or witness equals one
-        if (!w.equals(one) || witness.equals(one)) {
-            isComposite = true;
-        }
-        //return statement
-        return isComposite;
+        // w is a witness if w is not equal to one or its square equals one
+        return !isOne(w) || isOne(witness);
     }
 
     /**
@@ -233,18 +587,24 @@ public final class CryptoUtilities {
      * </pre>
      */
     public static boolean isPrime1(NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert compareToInt(n, 1) > 0 : "Violation of: n > 1";
         boolean isPrime;
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
+        int[] limbs = NaturalNumberLimbs.fromNaturalNumber(n);
+        if (NaturalNumberLimbs.valueBelow(limbs, THREE + 1) >= 0) {
             /*
              * 2 and 3 are primes
              */
             isPrime = true;
-        } else if (isEven(n)) {
+        } else if (!NaturalNumberLimbs.testBit(limbs, 0)) {
             /*
              * evens are composite
              */
             isPrime = false;
+        } else if (SmallPrimePrefilter.hasSmallFactor(limbs)) {
+            /*
+             * so is anything else with a small prime factor
+             */
+            isPrime = false;
         } else {
             /*
              * odd n >= 5: simply check whether 2 is a witness that n is
@@ -270,50 +630,309 @@ public final class CryptoUtilities {
      * </pre>
      */
     public static boolean isPrime2(NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert compareToInt(n, 1) > 0 : "Violation of: n > 1";
 
         /*
-         * Use the ability to generate random numbers (provided by the
-         * randomNumber method above) to generate several witness candidates --
-         * say, 10 to 50 candidates -- guessing that n is prime only if none of
-         * these candidates is a witness to n being composite (based on fact #3
-         * as described in the project description); use the code for isPrime1
-         * as a guide for how to do this, and pay attention to the requires
-         * clause of isWitnessToCompositeness
+         * Numbers below 10^18 are decided exactly on one long word.
+         * Otherwise trial division by small primes comes first, and survivors
+         * get the strong (Miller-Rabin) test: below 2^64 a fixed set of prime
+         * bases is known to decide primality exactly; above that, random
+         * bases in [2, n-2], stopping at the first one that proves n
+         * composite
          */
+        return isPrime2(n, PrimalityMode.RANDOM_BASES);
+    }
 
-        //intialize variables
-        NaturalNumber num = new NaturalNumber2(n);
-        NaturalNumber one = new NaturalNumber2(1);
-        final int fifty = 50;
-        num.decrement();
-        boolean isPrime = true;
-        //find if  number a prime number
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
-            isPrime = true;
-            //find if number is composite or not
-        } else if (isEven(n)) {
+    /**
+     * Reports whether n is a prime, using the given test for numbers too large
+     * to be decided exactly on one long word. Such numbers are looked up in
+     * the prime cache first, if one is installed (see {@link #setPrimeCache}),
+     * and the verdict is added to it.
+     *
+     * @param n
+     *            number to be checked
+     * @param mode
+     *            the probable-prime test to use
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n, PrimalityMode mode) {
+        assert compareToInt(n, 1) > 0 : "Violation of: n > 1";
+        assert mode != null : "Violation of: mode is not null";
+        PrimalityCheckEvent event = new PrimalityCheckEvent();
+        event.begin();
+        OperationCounters start = OperationCounters.snapshot();
+        PrimeCache cache = primeCache;
+        int[] limbs = NaturalNumberLimbs.fromNaturalNumber(n);
+        boolean useCache = cache != null
+                && NaturalNumberLimbs.valueBelow(limbs, WORD_LIMIT) < 0;
+        Boolean known = null;
+        if (useCache) {
+            known = cache.isPrime(n);
+        }
+        boolean isPrime;
+        if (known != null) {
+            isPrime = known;
+        } else if (mode == PrimalityMode.BAILLIE_PSW) {
+            isPrime = isBailliePswPrime(n, limbs);
+        } else {
+            isPrime = isPrime2(limbs, randomSource());
+        }
+        if (useCache && known == null) {
+            if (isPrime) {
+                cache.addPrime(n);
+            } else {
+                cache.addComposite(n);
+            }
+        }
+        event.prime = isPrime;
+        event.finish(n, start);
+        return isPrime;
+    }
+
+    /**
+     * Reports whether n is a prime: exactly on one long word when n < 10^18,
+     * and with the Baillie-PSW test otherwise.
+     *
+     * @param n
+     *            number to be checked
+     * @param limbs
+     *            limbs of n
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     */
+    private static boolean isBailliePswPrime(NaturalNumber n, int[] limbs) {
+        boolean isPrime;
+        long value = NaturalNumberLimbs.valueBelow(limbs, WORD_LIMIT);
+        if (value >= 0) {
+            isPrime = WordArithmetic.isPrime(value);
+        } else if (!NaturalNumberLimbs.testBit(limbs, 0)
+                || SmallPrimePrefilter.hasSmallFactor(limbs)) {
             isPrime = false;
         } else {
-            for (int i = 1; i < fifty; i = i + 1) {
-                NaturalNumber randomNum = randomNumber(num);
-                //comparing randomNum and giving randomNum value of num if one are true
-                while (randomNum.compareTo(one) <= 0
-                        || randomNum.compareTo(num) >= 0) {
-                    randomNum = randomNumber(num);
-                }
-                //if method is true set isPrime to false
-                if (isWitnessToCompositeness(randomNum, n)) {
-                    isPrime = false;
-                }
+            isPrime = new BailliePswTest(new StrongProbablePrimeTest(
+                    new MontgomeryContext(limbs)), n).isProbablePrime();
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether each of the given numbers is a prime; each verdict may be
+     * wrong with "low" probability. Candidates are checked in parallel on the
+     * common fork-join pool; every worker thread reuses one random stream for
+     * all the candidates it handles, and the small-prime tables are shared.
+     * Unlike isPrime2, the batch checks neither consult nor add to the prime
+     * cache (see {@link #setPrimeCache}), and record no
+     * {@code PrimalityCheckEvent} per candidate: they are meant for screening
+     * many candidates cheaply, and each worker only touches its own copy of
+     * a candidate's limbs.
+     *
+     * @param candidates
+     *            numbers to be checked
+     * @return verdicts, in the order of candidates, with the same meaning as
+     *         isPrime2
+     * @requires every candidate > 1
+     * @ensures <pre>
+     * |isPrime2Batch| = |candidates|  and
+     * for all i: integer where (0 <= i < |candidates|)
+     *   (isPrime2Batch[i] = [verdict of isPrime2 on candidates[i]])
+     * </pre>
+     */
+    public static boolean[] isPrime2Batch(List<NaturalNumber> candidates) {
+        assert candidates != null : "Violation of: candidates is not null";
+        boolean[] verdicts = new boolean[candidates.size()];
+        IntStream.range(0, verdicts.length).parallel()
+                .forEach(i -> verdicts[i] = isPrime2(
+                        lockedLimbs(candidates.get(i)), WORKER_RANDOM.get()));
+        return verdicts;
+    }
+
+    /**
+     * Reports whether each of the given numbers is a prime, as a stream of
+     * verdicts in the encounter order of candidates. The work is done in
+     * parallel, as for {@link #isPrime2Batch(List)}, when the result is
+     * consumed, and likewise bypasses the prime cache and the per-call JFR
+     * events.
+     *
+     * @param candidates
+     *            numbers to be checked
+     * @return verdicts, with the same meaning as isPrime2
+     * @requires every candidate > 1
+     */
+    public static Stream<Boolean> isPrime2Batch(
+            Stream<NaturalNumber> candidates) {
+        assert candidates != null : "Violation of: candidates is not null";
+        return candidates.parallel()
+                .map(n -> isPrime2(lockedLimbs(n), WORKER_RANDOM.get()));
+    }
+
+    /**
+     * Returns the limbs of n, read while holding the lock of n. The components
+     * do not promise that reading a {@code NaturalNumber} leaves it untouched
+     * while the read is in progress, so workers of a batch that lists the
+     * same candidate more than once take turns reading it; after that, they
+     * only use their own limbs.
+     *
+     * @param n
+     *            the number
+     * @return the limbs of n
+     */
+    private static int[] lockedLimbs(NaturalNumber n) {
+        int[] limbs;
+        synchronized (n) {
+            limbs = NaturalNumberLimbs.fromNaturalNumber(n);
+        }
+        return limbs;
+    }
+
+    /**
+     * Reports whether a number is a prime; may be wrong with "low"
+     * probability. Same test as isPrime2, but on the limbs of the number, and
+     * random bases come from the given stream.
+     *
+     * @param n
+     *            limbs of the number to be checked
+     * @param random
+     *            source of random bases
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @updates random
+     * @requires n > 1
+     */
+    private static boolean isPrime2(int[] n, RandomGenerator random) {
+        assert NaturalNumberLimbs.valueBelow(n, 2) < 0 : ""
+                + "Violation of: n > 1";
+        boolean isPrime;
+        long value = NaturalNumberLimbs.valueBelow(n, WORD_LIMIT);
+        if (value >= 0) {
+            isPrime = WordArithmetic.isPrime(value);
+        } else if (!NaturalNumberLimbs.testBit(n, 0)
+                || SmallPrimePrefilter.hasSmallFactor(n)) {
+            isPrime = false;
+        } else {
+            isPrime = isStrongProbablePrime(n, random);
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability. Same
+     * test as isPrime2, except that for n >= 2^64 the random-base rounds are
+     * spread across the common fork-join pool, each worker drawing bases from
+     * its own random stream, and the remaining rounds are abandoned as soon as
+     * any worker finds a witness.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime2Parallel = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2Parallel(NaturalNumber n) {
+        assert compareToInt(n, 1) > 0 : "Violation of: n > 1";
+
+        boolean isPrime;
+        int[] limbs = NaturalNumberLimbs.fromNaturalNumber(n);
+        long value = NaturalNumberLimbs.valueBelow(limbs, WORD_LIMIT);
+        if (value >= 0) {
+            isPrime = WordArithmetic.isPrime(value);
+        } else if (!NaturalNumberLimbs.testBit(limbs, 0)
+                || SmallPrimePrefilter.hasSmallFactor(limbs)) {
+            isPrime = false;
+        } else {
+            StrongProbablePrimeTest test = new StrongProbablePrimeTest(
+                    new MontgomeryContext(limbs));
+            if (NaturalNumberLimbs.bitLength(
+                    test.context().modulusLimbs()) <= DETERMINISTIC_BITS) {
+                isPrime = isStrongProbablePrime(test, randomSource());
+            } else {
+                isPrime = ParallelWitnessTest.isStrongProbablePrime(test,
+                        WITNESS_ROUNDS,
+                        new SplittableRandom(randomSource().nextLong()),
+                        ForkJoinPool.commonPool());
+            }
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether n passes the strong (Miller-Rabin) test: for every base
+     * in a fixed set that is exact when n < 2^64, or for WITNESS_ROUNDS random
+     * bases in [2, n-2] otherwise.
+     *
+     * @param n
+     *            limbs of the number to be checked
+     * @param random
+     *            source of random bases
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @updates random
+     * @requires n > 3 and n is odd
+     */
+    private static boolean isStrongProbablePrime(int[] n,
+            RandomGenerator random) {
+        boolean isPrime;
+        long value = NaturalNumberLimbs.valueBelow(n, WORD_LIMIT);
+        if (value >= 0) {
+            isPrime = WordArithmetic.isStrongProbablePrime(value);
+        } else {
+            isPrime = isStrongProbablePrime(new StrongProbablePrimeTest(
+                    new MontgomeryContext(n)), random);
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether the number tested by test passes the strong test, as
+     * isStrongProbablePrime(int[], RandomGenerator) does.
+     *
+     * @param test
+     *            strong test for n
+     * @param random
+     *            source of random bases
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @updates random
+     * @requires n > 3 and n is odd
+     */
+    private static boolean isStrongProbablePrime(StrongProbablePrimeTest test,
+            RandomGenerator random) {
+        boolean isPrime = true;
+        if (NaturalNumberLimbs.bitLength(
+                test.context().modulusLimbs()) <= DETERMINISTIC_BITS) {
+            for (int i = 0; i < DETERMINISTIC_BASES.length && isPrime; i++) {
+                isPrime = !test.isWitness(DETERMINISTIC_BASES[i]);
+            }
+        } else {
+            int[] bound = test.context().modulusLimbs().clone();
+            NaturalNumberLimbs.subtractSmall(bound, THREE + 1);
+            int[] base = new int[bound.length];
+            for (int i = 0; i < WITNESS_ROUNDS && isPrime; i++) {
+                NaturalNumberLimbs.uniform(bound, random, base);
+                NaturalNumberLimbs.addSmall(base, 2);
+                isPrime = !test.isWitness(base);
             }
         }
-        //return statement
         return isPrime;
     }
 
     /**
      * Generates a likely prime number at least as large as some given number.
+     * Numbers too large to be decided on one long word are looked up in the
+     * prime cache first, if one is installed (see {@link #setPrimeCache}), and
+     * the result is added to it.
      *
      * @param n
      *            minimum value of likely prime
@@ -322,22 +941,84 @@ public final class CryptoUtilities {
      * @ensures n >= #n and [n is very likely a prime number]
      */
     public static void generateNextLikelyPrime(NaturalNumber n) {
-        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert compareToInt(n, 1) > 0 : "Violation of: n > 1";
+
+        PrimeSearchEvent event = new PrimeSearchEvent();
+        event.begin();
+        OperationCounters start = OperationCounters.snapshot();
+        PrimeCache cache = primeCache;
+        NaturalNumber seed = null;
+        NaturalNumber known = null;
+        if (cache != null && lowValue(n, WORD_DIGITS) < 0) {
+            seed = new NaturalNumber2(n);
+            known = cache.nextLikelyPrime(n);
+        }
+        long tested = 0;
+        if (known != null) {
+            n.transferFrom(known);
+        } else {
+            tested = searchNextLikelyPrime(n, randomSource());
+            if (seed != null) {
+                cache.addRange(seed, n);
+            }
+        }
+        event.candidatesTested = tested;
+        event.finish(n, start);
+    }
 
+    /**
+     * Updates n to the next likely prime at least as large as n, and reports
+     * how many candidates got the probabilistic test. Unlike
+     * generateNextLikelyPrime, never consults or adds to the prime cache, and
+     * draws witnesses from the given source only.
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @param random
+     *            source of the witnesses
+     * @return number of candidates tested
+     * @updates n, random
+     * @requires n > 1
+     * @ensures n >= #n and [n is very likely a prime number]
+     */
+    static long searchNextLikelyPrime(NaturalNumber n,
+            RandomGenerator random) {
         /*
          * Use isPrime2 to check numbers, starting at n and increasing through
-         * the odd numbers only (why?), until n is likely prime
+         * the odd numbers only (why?), until n is likely prime; past the
+         * small-prime table, sieve windows of odd candidates first so only
+         * survivors get the strong test
          */
-
-        NaturalNumber two = new NaturalNumber2(2);
-        if (isEven(n) && n.compareTo(two) != 0) {
+        long tested = 1;
+        int[] limbs = NaturalNumberLimbs.fromNaturalNumber(n);
+        if (!NaturalNumberLimbs.testBit(limbs, 0)
+                && NaturalNumberLimbs.valueBelow(limbs, THREE) != 2) {
             n.increment();
+            NaturalNumberLimbs.addSmall(limbs, 1);
         }
-        while (!isPrime2(n) && n.compareTo(two) != 0) {
-            n.increment();
-            n.increment();
+        long value = NaturalNumberLimbs.valueBelow(limbs,
+                CandidateSieve.threshold());
+        if (value < 0) {
+            CandidateSieve sieve = new CandidateSieve(n);
+            NaturalNumber candidate = sieve.next();
+            while (!isStrongProbablePrime(
+                    NaturalNumberLimbs.fromNaturalNumber(candidate), random)) {
+                candidate = sieve.next();
+                tested++;
+            }
+            n.transferFrom(candidate);
+        } else {
+            /*
+             * Below the sieve threshold n fits in a long word (and 2 is
+             * prime, so the search stops there)
+             */
+            while (!WordArithmetic.isPrime(value)) {
+                value += 2;
+                tested++;
+            }
+            setFromLong(n, value);
         }
-
+        return tested;
     }
 
     /**
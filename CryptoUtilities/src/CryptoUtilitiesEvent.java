@@ -0,0 +1,84 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Fields shared by the JFR events {@code CryptoUtilities} records: the size
+ * of the operand and the {@link OperationCounters} of the call. The duration
+ * is the event's own. When the event is not enabled in any recording,
+ * {@code begin} and {@link #finish} do nothing beyond one check, and the
+ * operand size is never computed.
+ *
+ * @author Kierra Smith
+ *
+ */
+@Category("CryptoUtilities")
+abstract class CryptoUtilitiesEvent extends Event {
+
+    /**
+     * Bit length of the operand.
+     */
+    @Label("Operand Size")
+    @DataAmount(DataAmount.BITS)
+    int operandBits;
+
+    /**
+     * Modular multiplications done by the call.
+     */
+    @Label("Multiplications")
+    long multiplications;
+
+    /**
+     * Reductions modulo a modulus done by the call.
+     */
+    @Label("Reductions")
+    long reductions;
+
+    /**
+     * GCD loop steps done by the call.
+     */
+    @Label("GCD Steps")
+    long gcdSteps;
+
+    /**
+     * Strong-test rounds done by the call.
+     */
+    @Label("Witness Rounds")
+    long witnessRounds;
+
+    /**
+     * Candidates the small-prime prefilter or sieve rejected during the call.
+     */
+    @Label("Prefilter Rejections")
+    @Description("Candidates rejected by trial division or sieving")
+    long prefilterRejections;
+
+    /**
+     * Ends the event and, if some recording wants it, fills in the fields and
+     * commits it.
+     *
+     * @param operand
+     *            the operand whose size is recorded
+     * @param start
+     *            this thread's counts when the call began
+     */
+    final void finish(NaturalNumber operand, OperationCounters start) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.operandBits = NaturalNumberLimbs
+                    .bitLength(NaturalNumberLimbs.fromNaturalNumber(operand));
+            OperationCounters delta = OperationCounters.snapshot().since(start);
+            this.multiplications = delta.multiplications();
+            this.reductions = delta.reductions();
+            this.gcdSteps = delta.gcdSteps();
+            this.witnessRounds = delta.witnessRounds();
+            this.prefilterRejections = delta.prefilterRejections();
+            this.commit();
+        }
+    }
+
+}
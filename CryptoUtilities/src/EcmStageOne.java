@@ -0,0 +1,316 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stage 1 of Lenstra's elliptic-curve method on Montgomery curves
+ * B y^2 = x^3 + A x^2 + x, in projective X:Z coordinates with Suyama's
+ * parametrization (which makes every curve's group order divisible by 12).
+ * A point is multiplied by every prime power up to the bound B1 with the
+ * Montgomery ladder; if the group order of the curve modulo some prime factor
+ * p of n is B1-smooth, Z becomes divisible by p and gcd(Z, n) reveals it.
+ * Different curves have independent group orders, so curves can be tried in
+ * parallel. (There is no stage 2.)
+ *
+ * <p>
+ * To avoid a modular inversion per curve, (A + 2) / 4 is kept as a fraction
+ * and its denominator is folded into the doubling formula, which only scales
+ * both coordinates by the same factor.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class EcmStageOne {
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Useful constant, not a magic number: 4.
+     */
+    private static final int FOUR = 4;
+
+    /**
+     * Useful constant, not a magic number: 5.
+     */
+    private static final int FIVE = 5;
+
+    /**
+     * Number of points on the ladder (P, 2P, and so on) held at once.
+     */
+    private static final int POINTS = 2;
+
+    /**
+     * Context for n (used by this thread only).
+     */
+    private final MontgomeryContext context;
+
+    /**
+     * Numerator of (A + 2) / 4, in Montgomery form.
+     */
+    private final int[] a24Numerator;
+
+    /**
+     * Denominator of (A + 2) / 4, in Montgomery form.
+     */
+    private final int[] a24Denominator;
+
+    /**
+     * X coordinate of the current point.
+     */
+    private final int[] x;
+
+    /**
+     * Z coordinate of the current point.
+     */
+    private final int[] z;
+
+    /**
+     * Ladder registers: X and Z of kP and (k+1)P.
+     */
+    private final int[][] ladderX;
+
+    /**
+     * See ladderX.
+     */
+    private final int[][] ladderZ;
+
+    /**
+     * Scratch registers.
+     */
+    private final int[] t1;
+
+    /**
+     * See t1.
+     */
+    private final int[] t2;
+
+    /**
+     * See t1.
+     */
+    private final int[] t3;
+
+    /**
+     * See t1.
+     */
+    private final int[] t4;
+
+    /**
+     * Sets up the curve and starting point given by Suyama's parametrization
+     * with parameter sigma: u = sigma^2 - 5, v = 4 sigma, X0 : Z0 = u^3 : v^3
+     * and (A + 2) / 4 = (v - u)^3 (3u + v) / (16 u^3 v).
+     *
+     * @param context
+     *            context for n (used by this thread only)
+     * @param sigma
+     *            curve parameter, plain (not in Montgomery form)
+     * @requires 5 < sigma < n
+     */
+    EcmStageOne(MontgomeryContext context, int[] sigma) {
+        this.context = context;
+        int k = context.size();
+        this.t1 = new int[k];
+        this.t2 = new int[k];
+        this.t3 = new int[k];
+        this.t4 = new int[k];
+        this.ladderX = new int[POINTS][k];
+        this.ladderZ = new int[POINTS][k];
+        int[] s = Arrays.copyOf(sigma, k);
+        context.toMontgomery(s, s);
+        int[] u = new int[k];
+        context.multiply(s, s, u);
+        int[] five = this.small(FIVE);
+        context.subtract(u, five, u);
+        int[] v = this.small(FOUR);
+        context.multiply(v, s, v);
+        this.x = new int[k];
+        context.multiply(u, u, this.x);
+        context.multiply(this.x, u, this.x);
+        this.z = new int[k];
+        context.multiply(v, v, this.z);
+        context.multiply(this.z, v, this.z);
+        /*
+         * numerator = (v - u)^3 (3u + v); denominator = 16 u^3 v
+         */
+        this.a24Numerator = new int[k];
+        context.subtract(v, u, this.t1);
+        context.multiply(this.t1, this.t1, this.a24Numerator);
+        context.multiply(this.a24Numerator, this.t1, this.a24Numerator);
+        context.multiply(this.small(THREE), u, this.t2);
+        context.add(this.t2, v, this.t2);
+        context.multiply(this.a24Numerator, this.t2, this.a24Numerator);
+        this.a24Denominator = new int[k];
+        final int sixteen = 16;
+        context.multiply(this.small(sixteen), this.x, this.a24Denominator);
+        context.multiply(this.a24Denominator, v, this.a24Denominator);
+    }
+
+    /**
+     * Returns a small number in Montgomery form.
+     *
+     * @param value
+     *            the number
+     * @return value * R mod n
+     * @requires 0 <= value < n
+     */
+    private int[] small(int value) {
+        int[] a = new int[this.context.size()];
+        a[0] = value;
+        this.context.toMontgomery(a, a);
+        return a;
+    }
+
+    /**
+     * Doubles a point: (X : Z) -> 2 (X : Z), scaled by the denominator of
+     * (A + 2) / 4.
+     *
+     * @param px
+     *            X of the point
+     * @param pz
+     *            Z of the point
+     * @param outX
+     *            receives X of the double (may be px)
+     * @param outZ
+     *            receives Z of the double (may be pz)
+     */
+    private void doublePoint(int[] px, int[] pz, int[] outX, int[] outZ) {
+        MontgomeryContext c = this.context;
+        c.add(px, pz, this.t1);
+        c.multiply(this.t1, this.t1, this.t1);
+        c.subtract(px, pz, this.t2);
+        c.multiply(this.t2, this.t2, this.t2);
+        /*
+         * t3 = (X+Z)^2 - (X-Z)^2 = 4XZ
+         */
+        c.subtract(this.t1, this.t2, this.t3);
+        c.multiply(this.t1, this.t2, outX);
+        c.multiply(outX, this.a24Denominator, outX);
+        c.multiply(this.t2, this.a24Denominator, this.t4);
+        c.multiply(this.t3, this.a24Numerator, this.t2);
+        c.add(this.t4, this.t2, this.t4);
+        c.multiply(this.t3, this.t4, outZ);
+    }
+
+    /**
+     * Differential addition: P + Q from P, Q and P - Q.
+     *
+     * @param px
+     *            X of P
+     * @param pz
+     *            Z of P
+     * @param qx
+     *            X of Q
+     * @param qz
+     *            Z of Q
+     * @param dx
+     *            X of P - Q
+     * @param dz
+     *            Z of P - Q
+     * @param outX
+     *            receives X of P + Q (may be px or qx)
+     * @param outZ
+     *            receives Z of P + Q (may be pz or qz)
+     */
+    private void addPoints(int[] px, int[] pz, int[] qx, int[] qz, int[] dx,
+            int[] dz, int[] outX, int[] outZ) {
+        MontgomeryContext c = this.context;
+        c.subtract(px, pz, this.t1);
+        c.add(qx, qz, this.t2);
+        c.multiply(this.t1, this.t2, this.t1);
+        c.add(px, pz, this.t2);
+        c.subtract(qx, qz, this.t3);
+        c.multiply(this.t2, this.t3, this.t2);
+        c.add(this.t1, this.t2, this.t3);
+        c.subtract(this.t1, this.t2, this.t4);
+        c.multiply(this.t3, this.t3, this.t3);
+        c.multiply(this.t4, this.t4, this.t4);
+        c.multiply(this.t3, dz, this.t3);
+        c.multiply(this.t4, dx, outZ);
+        System.arraycopy(this.t3, 0, outX, 0, outX.length);
+    }
+
+    /**
+     * Multiplies the current point by m with the Montgomery ladder.
+     *
+     * @param m
+     *            the multiplier
+     * @requires m > 0
+     */
+    private void multiplyPoint(long m) {
+        int k = this.context.size();
+        int[][] rx = this.ladderX;
+        int[][] rz = this.ladderZ;
+        System.arraycopy(this.x, 0, rx[0], 0, k);
+        System.arraycopy(this.z, 0, rz[0], 0, k);
+        this.doublePoint(this.x, this.z, rx[1], rz[1]);
+        /*
+         * Invariant: registers hold jP and (j+1)P for the prefix j of m read
+         * so far, so their difference is always P
+         */
+        for (int b = Long.SIZE - 2 - Long.numberOfLeadingZeros(m); b >= 0;
+                b--) {
+            int bit = (int) ((m >>> b) & 1);
+            this.addPoints(rx[0], rz[0], rx[1], rz[1], this.x, this.z,
+                    rx[1 - bit], rz[1 - bit]);
+            this.doublePoint(rx[bit], rz[bit], rx[bit], rz[bit]);
+        }
+        System.arraycopy(rx[0], 0, this.x, 0, k);
+        System.arraycopy(rz[0], 0, this.z, 0, k);
+    }
+
+    /**
+     * Returns the primes up to bound.
+     *
+     * @param bound
+     *            largest candidate
+     * @return the primes in [2, bound], in increasing order
+     */
+    static int[] primesUpTo(int bound) {
+        BitSet composite = new BitSet(bound + 1);
+        int count = 0;
+        int[] primes = new int[Math.max(bound, 1)];
+        for (int p = 2; p <= bound; p++) {
+            if (!composite.get(p)) {
+                primes[count] = p;
+                count++;
+                for (long q = (long) p * p; q <= bound; q += p) {
+                    composite.set((int) q);
+                }
+            }
+        }
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Runs stage 1: multiplies the starting point by the largest power of
+     * every prime up to B1 that does not exceed B1, then takes gcd(Z, n).
+     *
+     * @param primes
+     *            the primes up to B1, in increasing order
+     * @param b1
+     *            the bound B1
+     * @param stop
+     *            checked between primes; when it is set, give up
+     * @return a factor d of n with 1 < d < n, or null if none was found
+     */
+    int[] run(int[] primes, int b1, AtomicBoolean stop) {
+        for (int i = 0; i < primes.length && !stop.get(); i++) {
+            long power = primes[i];
+            while (power * primes[i] <= b1) {
+                power *= primes[i];
+            }
+            this.multiplyPoint(power);
+        }
+        int[] n = this.context.modulusLimbs();
+        int[] g = GcdEngine.gcd(this.z, n);
+        int[] factor = null;
+        if (!stop.get() && NaturalNumberLimbs.bitLength(g) > 1
+                && NaturalNumberLimbs.compare(g, n) < 0) {
+            factor = g;
+        }
+        return factor;
+    }
+
+}
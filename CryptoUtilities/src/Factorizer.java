@@ -0,0 +1,411 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Integer factorization for numbers {@code CryptoUtilities.isPrime2} reports
+ * composite. Each split tries, in order: trial division by the small-prime
+ * table; Pollard's rho (Brent's variant, see {@code PollardRho}) with one
+ * iteration constant per worker, for factors up to about 40 bits; and stage 1
+ * of the elliptic-curve method (see {@code EcmStageOne}) with increasing
+ * bounds B1, one curve per worker at a time, for larger ones. Workers run on
+ * a fork-join pool, and the first one to find a factor stops the others.
+ *
+ * <p>
+ * Progress counters (iterations, curves, factors found by each method) are
+ * updated while a search runs, so another thread can poll them; together with
+ * the time spent in each method they accumulate until
+ * {@link #resetCounters()}.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class Factorizer {
+
+    /**
+     * Most rho iterations per worker.
+     */
+    private static final long RHO_ITERATIONS = 1L << 21;
+
+    /**
+     * Stage 1 bounds B1 tried in turn by the elliptic-curve method.
+     */
+    private static final int[] ECM_BOUNDS = { 2_000, 11_000, 50_000, 250_000 };
+
+    /**
+     * Number of curves tried at each bound of ECM_BOUNDS.
+     */
+    private static final int[] ECM_CURVES = { 25, 90, 300, 700 };
+
+    /**
+     * Smallest Suyama parameter used.
+     */
+    private static final int FIRST_SIGMA = 6;
+
+    /**
+     * Pool the workers run on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Rho iterations done.
+     */
+    private final LongAdder rhoIterations = new LongAdder();
+
+    /**
+     * Elliptic curves taken through stage 1.
+     */
+    private final LongAdder curves = new LongAdder();
+
+    /**
+     * Factors found by trial division.
+     */
+    private final LongAdder trialFactors = new LongAdder();
+
+    /**
+     * Factors found by rho.
+     */
+    private final LongAdder rhoFactors = new LongAdder();
+
+    /**
+     * Factors found by ECM.
+     */
+    private final LongAdder ecmFactors = new LongAdder();
+
+    /**
+     * Nanoseconds spent in rho.
+     */
+    private final LongAdder rhoNanos = new LongAdder();
+
+    /**
+     * Nanoseconds spent in ECM.
+     */
+    private final LongAdder ecmNanos = new LongAdder();
+
+    /**
+     * Constructor using the common fork-join pool.
+     */
+    public Factorizer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param pool
+     *            pool the workers run on
+     */
+    public Factorizer(ForkJoinPool pool) {
+        assert pool != null : "Violation of: pool is not null";
+        this.pool = pool;
+    }
+
+    /**
+     * Returns a nontrivial factor of n, if one can be found.
+     *
+     * @param n
+     *            the number to split
+     * @return a factor d of n with 1 < d < n, or null if n is (very likely)
+     *         prime or no method split it within its limits
+     * @requires n > 1
+     */
+    public NaturalNumber findFactor(NaturalNumber n) {
+        assert CryptoUtilities.compareToInt(n, 1) > 0 : "Violation of: n > 1";
+        int[] limbs = NaturalNumberLimbs.fromNaturalNumber(n);
+        int[] factor = null;
+        if ((limbs[0] & 1) == 0) {
+            if (CryptoUtilities.compareToInt(n, 2) > 0) {
+                factor = new int[] { 2 };
+            }
+        } else {
+            factor = smallFactor(limbs);
+            if (factor != null) {
+                this.trialFactors.increment();
+            } else if (!CryptoUtilities.isPrime2(n)) {
+                MontgomeryContext context = new MontgomeryContext(n);
+                factor = this.rho(context);
+                if (factor != null) {
+                    this.rhoFactors.increment();
+                } else {
+                    factor = this.ecm(context);
+                    if (factor != null) {
+                        this.ecmFactors.increment();
+                    }
+                }
+            }
+        }
+        NaturalNumber result = null;
+        if (factor != null) {
+            result = NaturalNumberLimbs.toNaturalNumber(factor);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the prime factorization of n, as far as it can be found.
+     *
+     * @param n
+     *            the number to factor
+     * @return the factors of n in increasing order, with multiplicity
+     * @requires n > 0
+     * @ensures <pre>
+     * [the product of the entries of factor is n]  and
+     * [each entry is a likely prime, or a composite no method could split]
+     * </pre>
+     */
+    public List<NaturalNumber> factor(NaturalNumber n) {
+        assert !n.isZero() : "Violation of: n > 0";
+        List<NaturalNumber> factors = new ArrayList<>();
+        Deque<NaturalNumber> pending = new ArrayDeque<>();
+        pending.push(new NaturalNumber2(n));
+        while (!pending.isEmpty()) {
+            NaturalNumber m = pending.pop();
+            if (!CryptoUtilities.isOne(m)) {
+                NaturalNumber d = this.findFactor(m);
+                if (d == null) {
+                    factors.add(m);
+                } else {
+                    m.divide(d);
+                    pending.push(d);
+                    pending.push(m);
+                }
+            }
+        }
+        factors.sort(NaturalNumber::compareTo);
+        return factors;
+    }
+
+    /**
+     * Returns the smallest prime in the small-prime table dividing n, unless
+     * that prime is n itself.
+     *
+     * @param n
+     *            limbs of the number
+     * @return the prime, or null if there is none
+     */
+    private static int[] smallFactor(int[] n) {
+        int[] residues = new int[SmallPrimePrefilter.PRIME_COUNT];
+        SmallPrimePrefilter.residues(n, residues);
+        int[] factor = null;
+        boolean single = NaturalNumberLimbs.significantLength(n) == 1;
+        for (int i = 0; i < residues.length && factor == null; i++) {
+            int p = SmallPrimePrefilter.prime(i);
+            if (residues[i] == 0 && !(single && n[0] == p)) {
+                factor = new int[] { p };
+            }
+        }
+        return factor;
+    }
+
+    /**
+     * Runs one task per worker of the pool and returns the first factor any
+     * of them finds, stopping the others. A task that fails makes the whole
+     * race fail, rather than look as if it found no factor.
+     *
+     * @param worker
+     *            builds the task of each worker from its index and the shared
+     *            stop flag
+     * @return the factor, or null if no task found one
+     * @throws IllegalStateException
+     *             if a task threw a checked exception, or the calling thread
+     *             was interrupted (unchecked exceptions and errors of a task
+     *             are rethrown as they are)
+     */
+    private int[] race(WorkerFactory worker) {
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicReference<int[]> found = new AtomicReference<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < this.pool.getParallelism(); i++) {
+            Callable<int[]> task = worker.create(i, stop);
+            tasks.add(() -> {
+                int[] factor = task.call();
+                if (factor != null && found.compareAndSet(null, factor)) {
+                    stop.set(true);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : this.pool.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while waiting for a factoring worker",
+                        ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("A factoring worker failed",
+                        cause);
+            }
+        }
+        return found.get();
+    }
+
+    /**
+     * Builds the task of one worker.
+     */
+    private interface WorkerFactory {
+
+        /**
+         * Returns the task of worker i.
+         *
+         * @param i
+         *            index of the worker
+         * @param stop
+         *            set once some worker has found a factor
+         * @return the task; it returns a factor, or null
+         */
+        Callable<int[]> create(int i, AtomicBoolean stop);
+
+    }
+
+    /**
+     * Runs rho with a different constant c = i + 1 on each worker i.
+     *
+     * @param context
+     *            context for n (only copies of it are used)
+     * @return a factor d of n with 1 < d < n, or null
+     */
+    private int[] rho(MontgomeryContext context) {
+        long start = System.nanoTime();
+        int[] factor = this.race((i, stop) -> () -> {
+            MontgomeryContext own = context.copy();
+            int[] c = new int[own.size()];
+            c[0] = i + 1;
+            int[] x0 = new int[own.size()];
+            x0[0] = 2;
+            return PollardRho.findFactor(own, c, x0, RHO_ITERATIONS, stop,
+                    this.rhoIterations);
+        });
+        this.rhoNanos.add(System.nanoTime() - start);
+        return factor;
+    }
+
+    /**
+     * Runs stage 1 of ECM at each bound in turn, the workers taking the
+     * curves of a bound one at a time.
+     *
+     * @param context
+     *            context for n (only copies of it are used)
+     * @return a factor d of n with 1 < d < n, or null
+     */
+    private int[] ecm(MontgomeryContext context) {
+        long start = System.nanoTime();
+        AtomicInteger nextSigma = new AtomicInteger(FIRST_SIGMA);
+        int[] factor = null;
+        for (int level = 0; level < ECM_BOUNDS.length && factor == null;
+                level++) {
+            int b1 = ECM_BOUNDS[level];
+            int[] primes = EcmStageOne.primesUpTo(b1);
+            AtomicInteger remaining = new AtomicInteger(ECM_CURVES[level]);
+            factor = this.race((i, stop) -> () -> {
+                MontgomeryContext own = context.copy();
+                int[] result = null;
+                while (result == null && !stop.get()
+                        && remaining.getAndDecrement() > 0) {
+                    int[] sigma = { nextSigma.getAndIncrement() };
+                    result = new EcmStageOne(own, sigma).run(primes, b1, stop);
+                    this.curves.increment();
+                }
+                return result;
+            });
+        }
+        this.ecmNanos.add(System.nanoTime() - start);
+        return factor;
+    }
+
+    /**
+     * Reports the number of rho iterations done so far.
+     *
+     * @return rho iterations since the last reset
+     */
+    public long rhoIterations() {
+        return this.rhoIterations.sum();
+    }
+
+    /**
+     * Reports the number of elliptic curves taken through stage 1 so far.
+     *
+     * @return curves since the last reset
+     */
+    public long curves() {
+        return this.curves.sum();
+    }
+
+    /**
+     * Reports the number of factors found by trial division.
+     *
+     * @return factors found by trial division since the last reset
+     */
+    public long trialFactors() {
+        return this.trialFactors.sum();
+    }
+
+    /**
+     * Reports the number of factors found by rho.
+     *
+     * @return factors found by rho since the last reset
+     */
+    public long rhoFactors() {
+        return this.rhoFactors.sum();
+    }
+
+    /**
+     * Reports the number of factors found by ECM.
+     *
+     * @return factors found by ECM since the last reset
+     */
+    public long ecmFactors() {
+        return this.ecmFactors.sum();
+    }
+
+    /**
+     * Reports the wall-clock time spent in completed rho searches.
+     *
+     * @return nanoseconds in rho since the last reset
+     */
+    public long rhoNanos() {
+        return this.rhoNanos.sum();
+    }
+
+    /**
+     * Reports the wall-clock time spent in completed ECM searches.
+     *
+     * @return nanoseconds in ECM since the last reset
+     */
+    public long ecmNanos() {
+        return this.ecmNanos.sum();
+    }
+
+    /**
+     * Resets every counter and timer.
+     */
+    public void resetCounters() {
+        this.rhoIterations.reset();
+        this.curves.reset();
+        this.trialFactors.reset();
+        this.rhoFactors.reset();
+        this.ecmFactors.reset();
+        this.rhoNanos.reset();
+        this.ecmNanos.reset();
+    }
+
+}
@@ -0,0 +1,255 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * A bounded cache of fixed-base exponentiation tables, keyed by (base,
+ * modulus). Raising a cached base to a new power modulo the same modulus
+ * skips the squarings of an ordinary exponentiation; see
+ * {@code FixedBaseTable}. When the tables held exceed the memory budget, the
+ * least recently used ones are evicted.
+ *
+ * <p>
+ * All methods are thread-safe. Tables are built outside the cache lock, so a
+ * miss does not hold up other threads.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class FixedBaseCache {
+
+    /**
+     * Initial capacity of the table map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Load factor of the table map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Memory budget for the precomputed powers, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Tables in least- to most-recently-used order.
+     */
+    private final Map<Key, FixedBaseTable> tables = new LinkedHashMap<>(
+            INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    /**
+     * Total bytes of the tables held.
+     */
+    private long bytes = 0;
+
+    /**
+     * Number of lookups that found a table.
+     */
+    private long hits = 0;
+
+    /**
+     * Number of lookups that built a table.
+     */
+    private long misses = 0;
+
+    /**
+     * Number of tables evicted.
+     */
+    private long evictions = 0;
+
+    /**
+     * A (base, modulus) pair; holds its own copies.
+     */
+    private static final class Key {
+
+        /**
+         * The base.
+         */
+        private final NaturalNumber base;
+
+        /**
+         * The modulus.
+         */
+        private final NaturalNumber modulus;
+
+        /**
+         * Constructor.
+         *
+         * @param base
+         *            the base
+         * @param modulus
+         *            the modulus
+         */
+        Key(NaturalNumber base, NaturalNumber modulus) {
+            this.base = new NaturalNumber2(base);
+            this.modulus = new NaturalNumber2(modulus);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            boolean result = false;
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                result = this.base.equals(other.base)
+                        && this.modulus.equals(other.modulus);
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            return this.base.hashCode() * prime + this.modulus.hashCode();
+        }
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes
+     *            memory budget for the precomputed powers, in bytes
+     * @requires maxBytes > 0
+     */
+    public FixedBaseCache(long maxBytes) {
+        assert maxBytes > 0 : "Violation of: maxBytes > 0";
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, using (and if needed building)
+     * the table for base n and modulus m. The table built covers exponents up
+     * to the longer of m and p.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 1 and m is odd
+     * @ensures n = #n ^ (p) mod m
+     */
+    public void powerMod(NaturalNumber n, NaturalNumber p, NaturalNumber m) {
+        assert n != null : "Violation of: n is not null";
+        assert p != null : "Violation of: p is not null";
+        assert m != null : "Violation of: m is not null";
+        Key key = new Key(n, m);
+        FixedBaseTable table = this.lookup(key);
+        if (table == null) {
+            int[] modulus = NaturalNumberLimbs.fromNaturalNumber(m);
+            int[] exponent = NaturalNumberLimbs.fromNaturalNumber(p);
+            int bits = Math.max(NaturalNumberLimbs.bitLength(modulus),
+                    NaturalNumberLimbs.bitLength(exponent));
+            table = new FixedBaseTable(new MontgomeryContext(m), n, bits);
+            this.insert(key, table);
+        }
+        table.power(n, p);
+    }
+
+    /**
+     * Returns the table for key, if cached, and marks it most recently used.
+     *
+     * @param key
+     *            the (base, modulus) pair
+     * @return the table, or null if it is not cached
+     */
+    private synchronized FixedBaseTable lookup(Key key) {
+        FixedBaseTable table = this.tables.get(key);
+        if (table != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return table;
+    }
+
+    /**
+     * Adds a table, evicting least recently used tables until the budget is
+     * met. A table larger than the whole budget is not cached.
+     *
+     * @param key
+     *            the (base, modulus) pair
+     * @param table
+     *            the table for key
+     */
+    private synchronized void insert(Key key, FixedBaseTable table) {
+        if (table.bytes() <= this.maxBytes) {
+            FixedBaseTable previous = this.tables.put(key, table);
+            if (previous != null) {
+                this.bytes -= previous.bytes();
+            }
+            this.bytes += table.bytes();
+            Iterator<FixedBaseTable> eldest = this.tables.values().iterator();
+            while (this.bytes > this.maxBytes) {
+                FixedBaseTable evicted = eldest.next();
+                eldest.remove();
+                this.bytes -= evicted.bytes();
+                this.evictions++;
+            }
+        }
+    }
+
+    /**
+     * Reports the number of tables cached.
+     *
+     * @return the number of tables
+     */
+    public synchronized int size() {
+        return this.tables.size();
+    }
+
+    /**
+     * Reports the memory held by the cached tables.
+     *
+     * @return size of the precomputed powers, in bytes
+     */
+    public synchronized long bytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Reports how many lookups found their table cached.
+     *
+     * @return number of hits
+     */
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Reports how many lookups had to build their table.
+     *
+     * @return number of misses
+     */
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Reports how many tables have been evicted to stay within the budget.
+     *
+     * @return number of evictions
+     */
+    public synchronized long evictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Removes every table and resets the counters.
+     */
+    public synchronized void clear() {
+        this.tables.clear();
+        this.bytes = 0;
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+    }
+
+}
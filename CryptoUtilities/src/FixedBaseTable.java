@@ -0,0 +1,180 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Precomputed powers of one base modulo one odd modulus, for raising that
+ * base to many different exponents. The exponent is split into w-bit digits
+ * e_0, e_1, ..., and the table holds g_i = base^(2^(w*i)) in Montgomery form;
+ * base^e = product of g_i^(e_i) is then assembled with the
+ * Brickell-Gordon-McCurley-Wilson bucket method in about (bits / w) + 2^w
+ * multiplications and no squarings, where a sliding-window exponentiation
+ * needs one squaring per exponent bit.
+ *
+ * <p>
+ * The table itself is never modified after construction, so one table can be
+ * used by several threads at once.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class FixedBaseTable {
+
+    /**
+     * Largest digit size considered.
+     */
+    private static final int MAX_WINDOW = 12;
+
+    /**
+     * Bytes per limb.
+     */
+    private static final int LIMB_BYTES = 4;
+
+    /**
+     * Context for the modulus; copied for every exponentiation.
+     */
+    private final MontgomeryContext context;
+
+    /**
+     * Digit size w.
+     */
+    private final int window;
+
+    /**
+     * powers[i] = base^(2^(w*i)) in Montgomery form.
+     */
+    private final int[][] powers;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            context for the modulus (not modified or retained)
+     * @param base
+     *            the base
+     * @param exponentBits
+     *            bit length of the largest exponent the table covers
+     * @requires exponentBits > 0
+     */
+    FixedBaseTable(MontgomeryContext context, NaturalNumber base,
+            int exponentBits) {
+        assert exponentBits > 0 : "Violation of: exponentBits > 0";
+        this.context = context.copy();
+        this.window = bestWindow(exponentBits);
+        int blocks = (exponentBits + this.window - 1) / this.window;
+        this.powers = new int[blocks][];
+        int[] g = this.context.reduce(base);
+        this.context.toMontgomery(g, g);
+        this.powers[0] = g;
+        for (int i = 1; i < blocks; i++) {
+            int[] next = this.powers[i - 1].clone();
+            for (int s = 0; s < this.window; s++) {
+                this.context.multiply(next, next, next);
+            }
+            this.powers[i] = next;
+        }
+    }
+
+    /**
+     * Returns the digit size minimizing the multiplications of one
+     * exponentiation.
+     *
+     * @param exponentBits
+     *            bit length of the exponents
+     * @return the best digit size
+     */
+    private static int bestWindow(int exponentBits) {
+        int best = 1;
+        long bestCost = Long.MAX_VALUE;
+        for (int w = 1; w <= MAX_WINDOW; w++) {
+            long cost = (exponentBits + w - 1) / w + (1L << w);
+            if (cost < bestCost) {
+                best = w;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reports the longest exponent this table covers.
+     *
+     * @return the number of exponent bits covered
+     */
+    int coveredBits() {
+        return this.window * this.powers.length;
+    }
+
+    /**
+     * Reports the approximate memory held by this table.
+     *
+     * @return size of the precomputed powers, in bytes
+     */
+    long bytes() {
+        return (long) this.powers.length * this.context.size() * LIMB_BYTES;
+    }
+
+    /**
+     * Returns the w-bit digit of e starting at bit position start.
+     *
+     * @param e
+     *            exponent limbs
+     * @param start
+     *            index of the lowest bit of the digit
+     * @return the digit
+     */
+    private int digit(int[] e, int start) {
+        int d = 0;
+        for (int b = this.window - 1; b >= 0; b--) {
+            d = (d << 1) | (NaturalNumberLimbs.testBit(e, start + b) ? 1 : 0);
+        }
+        return d;
+    }
+
+    /**
+     * Updates n to base^p mod m, where base and m are those of this table.
+     * Exponents longer than {@link #coveredBits()} fall back to a
+     * sliding-window exponentiation from the base.
+     *
+     * @param n
+     *            receives the result
+     * @param p
+     *            the power
+     * @replaces n
+     * @ensures n = base ^ (p) mod m
+     */
+    void power(NaturalNumber n, NaturalNumber p) {
+        MontgomeryContext ctx = this.context.copy();
+        int[] e = NaturalNumberLimbs.fromNaturalNumber(p);
+        int[] result = new int[ctx.size()];
+        if (NaturalNumberLimbs.bitLength(e) > this.coveredBits()) {
+            ctx.power(this.powers[0], e, result);
+        } else {
+            int[] digits = new int[this.powers.length];
+            for (int i = 0; i < digits.length; i++) {
+                digits[i] = this.digit(e, i * this.window);
+            }
+            /*
+             * For d from the largest digit down to 1, bucket multiplies in
+             * every g_i whose digit is d, so after step d it holds the product
+             * of the g_i with digit >= d; multiplying the buckets of all steps
+             * together counts each g_i exactly e_i times
+             */
+            int[] bucket = ctx.one().clone();
+            System.arraycopy(ctx.one(), 0, result, 0, result.length);
+            boolean bucketStarted = false;
+            for (int d = (1 << this.window) - 1; d >= 1; d--) {
+                for (int i = 0; i < digits.length; i++) {
+                    if (digits[i] == d) {
+                        ctx.multiply(bucket, this.powers[i], bucket);
+                        bucketStarted = true;
+                    }
+                }
+                if (bucketStarted) {
+                    ctx.multiply(result, bucket, result);
+                }
+            }
+        }
+        ctx.fromMontgomery(result, result);
+        n.transferFrom(NaturalNumberLimbs.toNaturalNumber(result));
+    }
+
+}
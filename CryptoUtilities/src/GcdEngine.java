@@ -0,0 +1,464 @@
+import java.util.Arrays;
+
+/**
+ * Greatest common divisors of numbers held as little-endian arrays of 32-bit
+ * limbs. Operands below {@link #LEHMER_THRESHOLD} limbs use binary (Stein's)
+ * GCD, which needs only shifts and subtractions; larger ones use Lehmer's
+ * algorithm, which runs Euclid's algorithm on the leading 31 bits of both
+ * operands in machine words and applies the accumulated 2x2 cofactor matrix
+ * to the full operands in one linear pass, so most multi-precision division
+ * steps are never done. The extended variant tracks the cofactor of the first
+ * operand alongside and so yields a modular inverse in the same pass.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class GcdEngine {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private GcdEngine() {
+    }
+
+    /**
+     * Operand size, in limbs, from which Lehmer's algorithm is used.
+     */
+    static final int LEHMER_THRESHOLD = 8;
+
+    /**
+     * Number of leading bits simulated in machine words by each Lehmer step.
+     */
+    private static final int DIGIT_BITS = 31;
+
+    /**
+     * Mask for DIGIT_BITS bits.
+     */
+    private static final long DIGIT_MASK = (1L << DIGIT_BITS) - 1;
+
+    /**
+     * Returns the greatest common divisor of x and y.
+     *
+     * @param x
+     *            one number
+     * @param y
+     *            the other number
+     * @return gcd(x, y), with gcd(0, 0) = 0
+     */
+    static int[] gcd(int[] x, int[] y) {
+        int size = Math.max(NaturalNumberLimbs.significantLength(x),
+                NaturalNumberLimbs.significantLength(y));
+        int[] result;
+        if (size < LEHMER_THRESHOLD) {
+            result = binaryGcd(x, y);
+        } else {
+            result = lehmer(x, y, false)[0];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the inverse of x modulo y, or null if there is none.
+     *
+     * @param x
+     *            number to invert
+     * @param y
+     *            the modulus
+     * @return [the u in [0, y) with x * u mod y = 1], or null if gcd(x, y) /=
+     *         1
+     * @requires y > 1
+     */
+    static int[] inverse(int[] x, int[] y) {
+        int[][] gcdAndCofactor = lehmer(x, y, true);
+        int[] inverse = null;
+        int[] g = gcdAndCofactor[0];
+        if (NaturalNumberLimbs.bitLength(g) == 1) {
+            inverse = gcdAndCofactor[1];
+        }
+        return inverse;
+    }
+
+    /**
+     * Binary GCD: strips common factors of 2, then repeatedly subtracts the
+     * smaller odd operand from the larger and strips the 2s from the
+     * difference.
+     *
+     * @param x
+     *            one number
+     * @param y
+     *            the other number
+     * @return gcd(x, y)
+     */
+    static int[] binaryGcd(int[] x, int[] y) {
+        int size = Math.max(x.length, y.length) + 1;
+        int[] a = Arrays.copyOf(x, size);
+        int[] b = Arrays.copyOf(y, size);
+        int[] result;
+        if (NaturalNumberLimbs.isZero(a)) {
+            result = b;
+        } else if (NaturalNumberLimbs.isZero(b)) {
+            result = a;
+        } else {
+            int za = NaturalNumberLimbs.lowestSetBit(a);
+            int zb = NaturalNumberLimbs.lowestSetBit(b);
+            int common = Math.min(za, zb);
+            shiftRightInPlace(a, za);
+            while (!NaturalNumberLimbs.isZero(b)) {
+                if (OperationCounters.ENABLED) {
+                    OperationCounters.current().gcdSteps++;
+                }
+                shiftRightInPlace(b, NaturalNumberLimbs.lowestSetBit(b));
+                if (NaturalNumberLimbs.compare(a, b) > 0) {
+                    int[] t = a;
+                    a = b;
+                    b = t;
+                }
+                subtractInPlace(b, a);
+            }
+            shiftLeftInPlace(a, common);
+            result = a;
+        }
+        return result;
+    }
+
+    /**
+     * Lehmer's GCD, optionally extended with the cofactor of x.
+     *
+     * @param x
+     *            one number
+     * @param y
+     *            the other number
+     * @param extended
+     *            whether to track the cofactor of x
+     * @return { gcd(x, y), [u in [0, y) with x * u = gcd(x, y) (mod y)] }, the
+     *         second entry being null unless extended
+     */
+    private static int[][] lehmer(int[] x, int[] y, boolean extended) {
+        int size = Math.max(x.length, y.length) + 1;
+        int[] a = Arrays.copyOf(x, size);
+        int[] b = Arrays.copyOf(y, size);
+        int[] a2 = new int[size];
+        int[] b2 = new int[size];
+        int[] q = new int[size];
+        int[] scratch = new int[size];
+        /*
+         * Invariants: x * ua = a and x * ub = b (mod y), with ua = sign *
+         * uMagA and ub = -sign * uMagB
+         */
+        int[] uMagA = null;
+        int[] uMagB = null;
+        int[] u2 = null;
+        int[] u3 = null;
+        boolean positive = true;
+        if (extended) {
+            uMagA = new int[size];
+            uMagA[0] = 1;
+            uMagB = new int[size];
+            u2 = new int[size];
+            u3 = new int[2 * size];
+        }
+        /*
+         * The leading digits are taken relative to a, so keep a >= b
+         */
+        if (NaturalNumberLimbs.compare(a, b) < 0) {
+            int[] t = a;
+            a = b;
+            b = t;
+            if (extended) {
+                t = uMagA;
+                uMagA = uMagB;
+                uMagB = t;
+                positive = false;
+            }
+        }
+        while (!NaturalNumberLimbs.isZero(b)) {
+            if (OperationCounters.ENABLED) {
+                OperationCounters.current().gcdSteps++;
+            }
+            int shift = Math.max(NaturalNumberLimbs.bitLength(a) - DIGIT_BITS,
+                    0);
+            long ah = leadingDigit(a, shift);
+            long bh = leadingDigit(b, shift);
+            long ca = 1;
+            long cb = 0;
+            long cc = 0;
+            long cd = 1;
+            boolean exact = true;
+            while (exact && bh + cc != 0 && bh + cd != 0) {
+                long qq = (ah + ca) / (bh + cc);
+                if (qq != (ah + cb) / (bh + cd)) {
+                    exact = false;
+                } else {
+                    long t = ca - qq * cc;
+                    ca = cc;
+                    cc = t;
+                    t = cb - qq * cd;
+                    cb = cd;
+                    cd = t;
+                    t = ah - qq * bh;
+                    ah = bh;
+                    bh = t;
+                }
+            }
+            if (cb == 0) {
+                /*
+                 * The leading digits did not determine even one quotient: do
+                 * one full division step a, b := b, a mod b
+                 */
+                divide(a, b, q, scratch);
+                int[] t = a;
+                a = b;
+                b = t;
+                if (extended) {
+                    multiplyAdd(uMagA, q, uMagB, u3);
+                    System.arraycopy(u3, 0, uMagA, 0, size);
+                    t = uMagA;
+                    uMagA = uMagB;
+                    uMagB = t;
+                    positive = !positive;
+                }
+            } else {
+                combine(ca, a, cb, b, a2);
+                combine(cc, a, cd, b, b2);
+                int[] t = a;
+                a = a2;
+                a2 = t;
+                t = b;
+                b = b2;
+                b2 = t;
+                if (extended) {
+                    combineMagnitudes(Math.abs(ca), uMagA, Math.abs(cb), uMagB,
+                            u2);
+                    combineMagnitudes(Math.abs(cc), uMagA, Math.abs(cd), uMagB,
+                            uMagB);
+                    t = uMagA;
+                    uMagA = u2;
+                    u2 = t;
+                    if (cb > 0) {
+                        positive = !positive;
+                    }
+                }
+            }
+        }
+        int[] cofactor = null;
+        if (extended) {
+            int[] modulus = Arrays.copyOf(y, size);
+            int[] r = uMagA;
+            if (NaturalNumberLimbs.compare(r, modulus) >= 0) {
+                divide(r, modulus, q, scratch);
+            }
+            if (!positive && !NaturalNumberLimbs.isZero(r)) {
+                int[] negated = modulus.clone();
+                subtractInPlace(negated, r);
+                r = negated;
+            }
+            cofactor = r;
+        }
+        return new int[][] { a, cofactor };
+    }
+
+    /**
+     * Returns DIGIT_BITS bits of a starting at bit shift.
+     *
+     * @param a
+     *            the limbs
+     * @param shift
+     *            index of the lowest bit wanted
+     * @return (a / 2^shift) mod 2^DIGIT_BITS
+     */
+    private static long leadingDigit(int[] a, int shift) {
+        int limb = shift / NaturalNumberLimbs.LIMB_BITS;
+        long lo = a[limb] & NaturalNumberLimbs.MASK;
+        long hi = 0;
+        if (limb + 1 < a.length) {
+            hi = a[limb + 1] & NaturalNumberLimbs.MASK;
+        }
+        return (((hi << NaturalNumberLimbs.LIMB_BITS) | lo) >>> (shift
+                % NaturalNumberLimbs.LIMB_BITS)) & DIGIT_MASK;
+    }
+
+    /**
+     * Sets out to ca * a + cb * b, where ca and cb have opposite signs (or one
+     * is zero) and the result is known to be nonnegative.
+     *
+     * @param ca
+     *            coefficient of a, |ca| < 2^31
+     * @param a
+     *            first operand
+     * @param cb
+     *            coefficient of b, |cb| < 2^31
+     * @param b
+     *            second operand
+     * @param out
+     *            receives the result (distinct from a and b)
+     */
+    private static void combine(long ca, int[] a, long cb, int[] b,
+            int[] out) {
+        long carry = 0;
+        for (int i = 0; i < out.length; i++) {
+            long t = ca * (a[i] & NaturalNumberLimbs.MASK)
+                    + cb * (b[i] & NaturalNumberLimbs.MASK) + carry;
+            out[i] = (int) t;
+            carry = t >> NaturalNumberLimbs.LIMB_BITS;
+        }
+        assert carry == 0 : "Violation of: result is nonnegative";
+    }
+
+    /**
+     * Sets out to ca * a + cb * b for nonnegative coefficients.
+     *
+     * @param ca
+     *            coefficient of a, 0 <= ca < 2^31
+     * @param a
+     *            first operand
+     * @param cb
+     *            coefficient of b, 0 <= cb < 2^31
+     * @param b
+     *            second operand
+     * @param out
+     *            receives the result (may alias b but not a)
+     */
+    private static void combineMagnitudes(long ca, int[] a, long cb, int[] b,
+            int[] out) {
+        long carry = 0;
+        for (int i = 0; i < out.length; i++) {
+            long t = ca * (a[i] & NaturalNumberLimbs.MASK)
+                    + cb * (b[i] & NaturalNumberLimbs.MASK) + carry;
+            out[i] = (int) t;
+            carry = t >>> NaturalNumberLimbs.LIMB_BITS;
+        }
+    }
+
+    /**
+     * Sets out to a + q * b.
+     *
+     * @param a
+     *            addend
+     * @param q
+     *            multiplier
+     * @param b
+     *            multiplicand
+     * @param out
+     *            receives the result, at least |q| + |b| limbs long
+     */
+    private static void multiplyAdd(int[] a, int[] q, int[] b, int[] out) {
+        Arrays.fill(out, 0);
+        System.arraycopy(a, 0, out, 0, a.length);
+        int lq = NaturalNumberLimbs.significantLength(q);
+        int lb = NaturalNumberLimbs.significantLength(b);
+        for (int i = 0; i < lq; i++) {
+            long qi = q[i] & NaturalNumberLimbs.MASK;
+            long carry = 0;
+            for (int j = 0; j < lb; j++) {
+                long t = (out[i + j] & NaturalNumberLimbs.MASK)
+                        + qi * (b[j] & NaturalNumberLimbs.MASK) + carry;
+                out[i + j] = (int) t;
+                carry = t >>> NaturalNumberLimbs.LIMB_BITS;
+            }
+            for (int k = i + lb; carry != 0; k++) {
+                long t = (out[k] & NaturalNumberLimbs.MASK) + carry;
+                out[k] = (int) t;
+                carry = t >>> NaturalNumberLimbs.LIMB_BITS;
+            }
+        }
+    }
+
+    /**
+     * Replaces a by a mod b and sets q to a div b, by shift-and-subtract.
+     *
+     * @param a
+     *            dividend, replaced by the remainder
+     * @param b
+     *            divisor
+     * @param q
+     *            receives the quotient
+     * @param scratch
+     *            work space as long as a
+     * @requires b /= 0
+     */
+    private static void divide(int[] a, int[] b, int[] q, int[] scratch) {
+        Arrays.fill(q, 0);
+        int shift = NaturalNumberLimbs.bitLength(a)
+                - NaturalNumberLimbs.bitLength(b);
+        if (shift >= 0) {
+            Arrays.fill(scratch, 0);
+            System.arraycopy(b, 0, scratch, 0,
+                    NaturalNumberLimbs.significantLength(b));
+            shiftLeftInPlace(scratch, shift);
+            for (int s = shift; s >= 0; s--) {
+                if (NaturalNumberLimbs.compare(a, scratch) >= 0) {
+                    subtractInPlace(a, scratch);
+                    q[s / NaturalNumberLimbs.LIMB_BITS] |= 1 << (s
+                            % NaturalNumberLimbs.LIMB_BITS);
+                }
+                shiftRightInPlace(scratch, 1);
+            }
+        }
+    }
+
+    /**
+     * Replaces a by a - b.
+     *
+     * @param a
+     *            minuend
+     * @param b
+     *            subtrahend, no longer than a
+     * @requires a >= b
+     */
+    private static void subtractInPlace(int[] a, int[] b) {
+        long borrow = 0;
+        int lb = NaturalNumberLimbs.significantLength(b);
+        for (int i = 0; i < a.length && (i < lb || borrow != 0); i++) {
+            long bi = (i < lb) ? b[i] & NaturalNumberLimbs.MASK : 0;
+            long t = (a[i] & NaturalNumberLimbs.MASK) - bi - borrow;
+            a[i] = (int) t;
+            borrow = (t < 0) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Replaces a by a / 2^bits.
+     *
+     * @param a
+     *            the limbs
+     * @param bits
+     *            shift distance, nonnegative
+     */
+    private static void shiftRightInPlace(int[] a, int bits) {
+        int limbs = bits / NaturalNumberLimbs.LIMB_BITS;
+        int rest = bits % NaturalNumberLimbs.LIMB_BITS;
+        for (int i = 0; i < a.length; i++) {
+            long lo = (i + limbs < a.length)
+                    ? a[i + limbs] & NaturalNumberLimbs.MASK
+                    : 0;
+            long hi = (i + limbs + 1 < a.length)
+                    ? a[i + limbs + 1] & NaturalNumberLimbs.MASK
+                    : 0;
+            a[i] = (int) (((hi << NaturalNumberLimbs.LIMB_BITS) | lo) >>> rest);
+        }
+    }
+
+    /**
+     * Replaces a by a * 2^bits.
+     *
+     * @param a
+     *            the limbs
+     * @param bits
+     *            shift distance, nonnegative
+     * @requires a * 2^bits fits in |a| limbs
+     */
+    private static void shiftLeftInPlace(int[] a, int bits) {
+        int limbs = bits / NaturalNumberLimbs.LIMB_BITS;
+        int rest = bits % NaturalNumberLimbs.LIMB_BITS;
+        for (int i = a.length - 1; i >= 0; i--) {
+            long lo = (i - limbs >= 0) ? a[i - limbs] & NaturalNumberLimbs.MASK
+                    : 0;
+            long lower = (i - limbs - 1 >= 0)
+                    ? a[i - limbs - 1] & NaturalNumberLimbs.MASK
+                    : 0;
+            a[i] = (int) (((lo << NaturalNumberLimbs.LIMB_BITS) | lower) >>> (
+                    NaturalNumberLimbs.LIMB_BITS - rest));
+        }
+    }
+
+}
@@ -0,0 +1,539 @@
+import java.util.Arrays;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Modular exponentiation engine for a fixed odd modulus, using Montgomery
+ * multiplication on preallocated arrays of 32-bit limbs and a left-to-right
+ * sliding-window scan of the exponent. Creating a context does the per-modulus
+ * setup (limb conversion, -m^-1 mod 2^32, R^2 mod m) once, so repeated
+ * exponentiations mod the same m only pay for the multiplications.
+ *
+ * <p>
+ * A context keeps scratch buffers between calls and therefore must not be
+ * shared between threads; use {@link #copy()} to give each thread its own.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class MontgomeryContext {
+
+    /**
+     * Exponent bit lengths above which the next larger window size pays off;
+     * window size w is used for exponents of at most WINDOW_THRESHOLDS[w - 1]
+     * bits.
+     */
+    private static final int[] WINDOW_THRESHOLDS = { 7, 25, 81, 241, 673 };
+
+    /**
+     * Largest window size used.
+     */
+    private static final int MAX_WINDOW = WINDOW_THRESHOLDS.length + 1;
+
+    /**
+     * Number of Newton iterations that lift the starting inverse mod 2^3 (an
+     * odd a is its own inverse mod 8) to an inverse mod 2^32; each iteration
+     * doubles the number of correct low bits.
+     */
+    private static final int INVERSE_ITERATIONS = 5;
+
+    /**
+     * The modulus.
+     */
+    private final NaturalNumber modulus;
+
+    /**
+     * Limbs of the modulus.
+     */
+    private final int[] m;
+
+    /**
+     * Number of limbs in the modulus (and in every residue).
+     */
+    private final int size;
+
+    /**
+     * -m^-1 mod 2^32.
+     */
+    private final int mInverse;
+
+    /**
+     * R^2 mod m, where R = 2^(32 * size).
+     */
+    private final int[] rSquared;
+
+    /**
+     * R mod m, i.e., 1 in Montgomery form.
+     */
+    private final int[] montgomeryOne;
+
+    /**
+     * Plain 1, padded to size limbs.
+     */
+    private final int[] unit;
+
+    /**
+     * Scratch accumulator for Montgomery multiplication.
+     */
+    private final long[] product;
+
+    /**
+     * Running result of a windowed exponentiation.
+     */
+    private final int[] accumulator;
+
+    /**
+     * Base squared, used while filling the window table.
+     */
+    private final int[] baseSquared;
+
+    /**
+     * Odd powers base^1, base^3, ..., in Montgomery form; grown on demand.
+     */
+    private int[][] oddPowers;
+
+    /**
+     * Constructor.
+     *
+     * @param modulus
+     *            the modulus
+     * @requires modulus > 1 and modulus is odd
+     */
+    public MontgomeryContext(NaturalNumber modulus) {
+        this(NaturalNumberLimbs.fromNaturalNumber(modulus),
+                new NaturalNumber2(modulus));
+    }
+
+    /**
+     * Constructor from the limbs of the modulus, for callers that already
+     * hold them.
+     *
+     * @param modulus
+     *            limbs of the modulus (leading zero limbs allowed)
+     * @requires modulus > 1 and modulus is odd
+     */
+    MontgomeryContext(int[] modulus) {
+        this(Arrays.copyOf(modulus,
+                NaturalNumberLimbs.significantLength(modulus)),
+                NaturalNumberLimbs.toNaturalNumber(modulus));
+    }
+
+    /**
+     * Constructor doing the per-modulus setup.
+     *
+     * @param m
+     *            limbs of the modulus, with no leading zero limbs
+     * @param modulus
+     *            the modulus, not shared with the caller
+     * @requires modulus > 1 and modulus is odd and m = modulus
+     */
+    private MontgomeryContext(int[] m, NaturalNumber modulus) {
+        this.modulus = modulus;
+        this.m = m;
+        assert this.m.length > 0 && (this.m[0] & 1) == 1
+                && NaturalNumberLimbs.bitLength(this.m) > 1 : ""
+                        + "Violation of: modulus > 1 and modulus is odd";
+        this.size = this.m.length;
+        this.mInverse = negativeInverse(this.m[0]);
+        this.product = new long[this.size + 2];
+        this.accumulator = new int[this.size];
+        this.baseSquared = new int[this.size];
+        this.oddPowers = new int[0][];
+        this.unit = new int[this.size];
+        this.unit[0] = 1;
+        this.montgomeryOne = new int[this.size];
+        this.rSquared = new int[this.size];
+        /*
+         * Double 1 modulo m 2 * 32 * size times to get R^2 mod m; R mod m
+         * falls out half way through
+         */
+        int[] x = this.unit.clone();
+        final int rBits = NaturalNumberLimbs.LIMB_BITS * this.size;
+        for (int i = 1; i <= 2 * rBits; i++) {
+            this.doubleMod(x);
+            if (i == rBits) {
+                System.arraycopy(x, 0, this.montgomeryOne, 0, this.size);
+            }
+        }
+        System.arraycopy(x, 0, this.rSquared, 0, this.size);
+    }
+
+    /**
+     * Private copy constructor that shares the immutable setup of another
+     * context but not its scratch buffers.
+     *
+     * @param source
+     *            context to copy
+     */
+    private MontgomeryContext(MontgomeryContext source) {
+        this.modulus = source.modulus;
+        this.m = source.m;
+        this.size = source.size;
+        this.mInverse = source.mInverse;
+        this.rSquared = source.rSquared;
+        this.montgomeryOne = source.montgomeryOne;
+        this.unit = source.unit;
+        this.product = new long[this.size + 2];
+        this.accumulator = new int[this.size];
+        this.baseSquared = new int[this.size];
+        this.oddPowers = new int[0][];
+    }
+
+    /**
+     * Returns a context for the same modulus with its own scratch buffers,
+     * suitable for use on another thread.
+     *
+     * @return a copy of this context
+     */
+    public MontgomeryContext copy() {
+        return new MontgomeryContext(this);
+    }
+
+    /**
+     * Returns a copy of the modulus.
+     *
+     * @return the modulus
+     */
+    public NaturalNumber modulus() {
+        return new NaturalNumber2(this.modulus);
+    }
+
+    /**
+     * Updates n to its p-th power modulo the modulus of this context.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @updates n
+     * @ensures n = #n ^ (p) mod [modulus of this]
+     */
+    public void powerMod(NaturalNumber n, NaturalNumber p) {
+        assert n != null : "Violation of: n is not null";
+        assert p != null : "Violation of: p is not null";
+        int[] x = this.reduce(n);
+        this.toMontgomery(x, x);
+        this.power(x, NaturalNumberLimbs.fromNaturalNumber(p), x);
+        this.fromMontgomery(x, x);
+        n.transferFrom(NaturalNumberLimbs.toNaturalNumber(x));
+    }
+
+    /**
+     * Reports the number of limbs in each residue of this context.
+     *
+     * @return the number of limbs
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the limbs of the modulus (not to be modified).
+     *
+     * @return the modulus limbs
+     */
+    int[] modulusLimbs() {
+        return this.m;
+    }
+
+    /**
+     * Returns 1 in Montgomery form (not to be modified).
+     *
+     * @return R mod m
+     */
+    int[] one() {
+        return this.montgomeryOne;
+    }
+
+    /**
+     * Returns the limbs of n mod m, padded to {@link #size()} limbs.
+     *
+     * @param n
+     *            the number to reduce
+     * @return n mod m
+     */
+    int[] reduce(NaturalNumber n) {
+        if (OperationCounters.ENABLED) {
+            OperationCounters.current().reductions++;
+        }
+        int[] x = NaturalNumberLimbs.fromNaturalNumber(n);
+        if (NaturalNumberLimbs.compare(x, this.m) >= 0) {
+            NaturalNumber q = new NaturalNumber2(n);
+            x = NaturalNumberLimbs.fromNaturalNumber(q.divide(this.modulus));
+        }
+        return Arrays.copyOf(x, this.size);
+    }
+
+    /**
+     * Converts a residue into Montgomery form: out = a * R mod m.
+     *
+     * @param a
+     *            residue, less than m
+     * @param out
+     *            receives the result (may be a)
+     */
+    void toMontgomery(int[] a, int[] out) {
+        this.multiply(a, this.rSquared, out);
+    }
+
+    /**
+     * Converts a residue out of Montgomery form: out = a * R^-1 mod m.
+     *
+     * @param a
+     *            residue in Montgomery form
+     * @param out
+     *            receives the result (may be a)
+     */
+    void fromMontgomery(int[] a, int[] out) {
+        this.multiply(a, this.unit, out);
+    }
+
+    /**
+     * Montgomery product: out = a * b * R^-1 mod m (coarsely integrated
+     * operand scanning).
+     *
+     * @param a
+     *            first factor, less than m
+     * @param b
+     *            second factor, less than m
+     * @param out
+     *            receives the result (may alias a or b)
+     */
+    void multiply(int[] a, int[] b, int[] out) {
+        if (OperationCounters.ENABLED) {
+            OperationCounters.current().multiplications++;
+        }
+        final long mask = NaturalNumberLimbs.MASK;
+        final int shift = NaturalNumberLimbs.LIMB_BITS;
+        final int k = this.size;
+        long[] t = this.product;
+        Arrays.fill(t, 0);
+        for (int i = 0; i < k; i++) {
+            long bi = b[i] & mask;
+            long carry = 0;
+            for (int j = 0; j < k; j++) {
+                long s = t[j] + (a[j] & mask) * bi + carry;
+                t[j] = s & mask;
+                carry = s >>> shift;
+            }
+            long s = t[k] + carry;
+            t[k] = s & mask;
+            t[k + 1] = s >>> shift;
+            /*
+             * Add the multiple of m that clears the low limb, then shift down
+             * one limb
+             */
+            long q = ((int) t[0] * this.mInverse) & mask;
+            s = t[0] + q * (this.m[0] & mask);
+            carry = s >>> shift;
+            for (int j = 1; j < k; j++) {
+                s = t[j] + q * (this.m[j] & mask) + carry;
+                t[j - 1] = s & mask;
+                carry = s >>> shift;
+            }
+            s = t[k] + carry;
+            t[k - 1] = s & mask;
+            t[k] = t[k + 1] + (s >>> shift);
+        }
+        /*
+         * Result is now below 2m; one conditional subtraction finishes it
+         */
+        int cmp = 0;
+        for (int j = k - 1; cmp == 0 && j >= 0; j--) {
+            cmp = Long.compare(t[j], this.m[j] & mask);
+        }
+        if (t[k] != 0 || cmp >= 0) {
+            long borrow = 0;
+            for (int j = 0; j < k; j++) {
+                long d = t[j] - (this.m[j] & mask) - borrow;
+                out[j] = (int) d;
+                borrow = (d >>> (2 * shift - 1));
+            }
+        } else {
+            for (int j = 0; j < k; j++) {
+                out[j] = (int) t[j];
+            }
+        }
+    }
+
+    /**
+     * Modular sum: out = a + b mod m (the same in and out of Montgomery form).
+     *
+     * @param a
+     *            first term, less than m
+     * @param b
+     *            second term, less than m
+     * @param out
+     *            receives the result (may alias a or b)
+     */
+    void add(int[] a, int[] b, int[] out) {
+        final long mask = NaturalNumberLimbs.MASK;
+        final int shift = NaturalNumberLimbs.LIMB_BITS;
+        long carry = 0;
+        for (int j = 0; j < this.size; j++) {
+            long s = (a[j] & mask) + (b[j] & mask) + carry;
+            out[j] = (int) s;
+            carry = s >>> shift;
+        }
+        if (carry != 0 || NaturalNumberLimbs.compare(out, this.m) >= 0) {
+            long borrow = 0;
+            for (int j = 0; j < this.size; j++) {
+                long d = (out[j] & mask) - (this.m[j] & mask) - borrow;
+                out[j] = (int) d;
+                borrow = (d >>> (2 * shift - 1));
+            }
+        }
+    }
+
+    /**
+     * Modular difference: out = a - b mod m (the same in and out of
+     * Montgomery form).
+     *
+     * @param a
+     *            minuend, less than m
+     * @param b
+     *            subtrahend, less than m
+     * @param out
+     *            receives the result (may alias a or b)
+     */
+    void subtract(int[] a, int[] b, int[] out) {
+        final long mask = NaturalNumberLimbs.MASK;
+        final int shift = NaturalNumberLimbs.LIMB_BITS;
+        long borrow = 0;
+        for (int j = 0; j < this.size; j++) {
+            long d = (a[j] & mask) - (b[j] & mask) - borrow;
+            out[j] = (int) d;
+            borrow = (d >>> (2 * shift - 1));
+        }
+        if (borrow != 0) {
+            long carry = 0;
+            for (int j = 0; j < this.size; j++) {
+                long s = (out[j] & mask) + (this.m[j] & mask) + carry;
+                out[j] = (int) s;
+                carry = s >>> shift;
+            }
+        }
+    }
+
+    /**
+     * Raises a Montgomery-form base to a power: out = base ^ exponent (both
+     * base and result in Montgomery form), scanning the exponent left to right
+     * in sliding windows of odd powers.
+     *
+     * @param base
+     *            base in Montgomery form
+     * @param exponent
+     *            exponent limbs (any length)
+     * @param out
+     *            receives the result (may be base)
+     */
+    void power(int[] base, int[] exponent, int[] out) {
+        int bits = NaturalNumberLimbs.bitLength(exponent);
+        int window = MAX_WINDOW;
+        for (int w = 0; w < WINDOW_THRESHOLDS.length; w++) {
+            if (bits <= WINDOW_THRESHOLDS[w] && window == MAX_WINDOW) {
+                window = w + 1;
+            }
+        }
+        int tableSize = 1 << (window - 1);
+        if (this.oddPowers.length < tableSize) {
+            int[][] grown = Arrays.copyOf(this.oddPowers, tableSize);
+            for (int i = this.oddPowers.length; i < tableSize; i++) {
+                grown[i] = new int[this.size];
+            }
+            this.oddPowers = grown;
+        }
+        System.arraycopy(base, 0, this.oddPowers[0], 0, this.size);
+        if (tableSize > 1) {
+            this.multiply(base, base, this.baseSquared);
+            for (int i = 1; i < tableSize; i++) {
+                this.multiply(this.oddPowers[i - 1], this.baseSquared,
+                        this.oddPowers[i]);
+            }
+        }
+        int[] acc = this.accumulator;
+        System.arraycopy(this.montgomeryOne, 0, acc, 0, this.size);
+        boolean started = false;
+        int i = bits - 1;
+        while (i >= 0) {
+            if (!NaturalNumberLimbs.testBit(exponent, i)) {
+                if (started) {
+                    this.multiply(acc, acc, acc);
+                }
+                i--;
+            } else {
+                /*
+                 * Take the longest window starting at bit i that ends in a 1
+                 * bit, so its value is odd and in the table
+                 */
+                int j = Math.max(i - window + 1, 0);
+                while (!NaturalNumberLimbs.testBit(exponent, j)) {
+                    j++;
+                }
+                int value = 0;
+                for (int b = i; b >= j; b--) {
+                    value = (value << 1)
+                            | (NaturalNumberLimbs.testBit(exponent, b) ? 1 : 0);
+                }
+                if (started) {
+                    for (int b = i; b >= j; b--) {
+                        this.multiply(acc, acc, acc);
+                    }
+                    this.multiply(acc, this.oddPowers[value >>> 1], acc);
+                } else {
+                    System.arraycopy(this.oddPowers[value >>> 1], 0, acc, 0,
+                            this.size);
+                    started = true;
+                }
+                i = j - 1;
+            }
+        }
+        System.arraycopy(acc, 0, out, 0, this.size);
+    }
+
+    /**
+     * Replaces x by 2x mod m.
+     *
+     * @param x
+     *            residue, less than m
+     */
+    private void doubleMod(int[] x) {
+        final long mask = NaturalNumberLimbs.MASK;
+        final int shift = NaturalNumberLimbs.LIMB_BITS;
+        long carry = 0;
+        for (int j = 0; j < this.size; j++) {
+            long d = ((x[j] & mask) << 1) | carry;
+            x[j] = (int) d;
+            carry = d >>> shift;
+        }
+        if (carry != 0 || NaturalNumberLimbs.compare(x, this.m) >= 0) {
+            long borrow = 0;
+            for (int j = 0; j < this.size; j++) {
+                long d = (x[j] & mask) - (this.m[j] & mask) - borrow;
+                x[j] = (int) d;
+                borrow = (d >>> (2 * shift - 1));
+            }
+        }
+    }
+
+    /**
+     * Returns -a^-1 mod 2^32.
+     *
+     * @param a
+     *            odd low limb of the modulus
+     * @return the negated inverse
+     */
+    private static int negativeInverse(int a) {
+        /*
+         * a is its own inverse mod 2^3; each Newton step doubles the number of
+         * correct low bits
+         */
+        int inverse = a;
+        for (int i = 0; i < INVERSE_ITERATIONS; i++) {
+            inverse *= 2 - a * inverse;
+        }
+        return -inverse;
+    }
+
+}
@@ -0,0 +1,383 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Conversions between {@code NaturalNumber} and little-endian arrays of
+ * unsigned 32-bit limbs, plus the handful of limb-level helpers shared by the
+ * arithmetic engines used by {@code CryptoUtilities}.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class NaturalNumberLimbs {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private NaturalNumberLimbs() {
+    }
+
+    /**
+     * Mask selecting the low 32 bits of a long, i.e., one unsigned limb.
+     */
+    static final long MASK = 0xFFFFFFFFL;
+
+    /**
+     * Number of bits in one limb.
+     */
+    static final int LIMB_BITS = 32;
+
+    /**
+     * Number of decimal digits converted at a time.
+     */
+    private static final int CHUNK_DIGITS = 9;
+
+    /**
+     * 10 ^ CHUNK_DIGITS.
+     */
+    private static final long CHUNK = 1_000_000_000L;
+
+    /**
+     * Upper bound on the number of bits needed per ten decimal digits
+     * (10 * log2(10) < 34).
+     */
+    private static final int BITS_PER_TEN_DIGITS = 34;
+
+    /**
+     * Returns the limbs of n, least significant first, with no leading zero
+     * limbs (so zero is represented by an empty array).
+     *
+     * @param n
+     *            the number to convert
+     * @return the limbs of n
+     * @ensures [fromNaturalNumber is the minimal little-endian base 2^32
+     *          representation of n]
+     */
+    static int[] fromNaturalNumber(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        String digits = n.toString();
+        final int ten = 10;
+        int capacity = (digits.length() * BITS_PER_TEN_DIGITS / ten)
+                / LIMB_BITS + 2;
+        int[] limbs = new int[capacity];
+        int used = 0;
+        int start = 0;
+        int first = digits.length() % CHUNK_DIGITS;
+        int end = (first == 0) ? CHUNK_DIGITS : first;
+        while (start < digits.length()) {
+            long chunk = Long.parseLong(digits.substring(start, end));
+            long scale = 1;
+            for (int i = start; i < end; i++) {
+                scale *= ten;
+            }
+            /*
+             * limbs = limbs * scale + chunk
+             */
+            long carry = chunk;
+            for (int i = 0; i < used; i++) {
+                long t = (limbs[i] & MASK) * scale + carry;
+                limbs[i] = (int) t;
+                carry = t >>> LIMB_BITS;
+            }
+            if (carry != 0) {
+                limbs[used] = (int) carry;
+                used++;
+            }
+            start = end;
+            end = start + CHUNK_DIGITS;
+        }
+        return Arrays.copyOf(limbs, used);
+    }
+
+    /**
+     * Returns the limbs of n, least significant first, zero-padded to exactly
+     * {@code length} limbs.
+     *
+     * @param n
+     *            the number to convert
+     * @param length
+     *            number of limbs in the result
+     * @return the limbs of n
+     * @requires n < 2 ^ (32 * length)
+     * @ensures [fromNaturalNumber is the base 2^32 representation of n, padded
+     *          to length limbs]
+     */
+    static int[] fromNaturalNumber(NaturalNumber n, int length) {
+        int[] limbs = fromNaturalNumber(n);
+        assert limbs.length <= length : "Violation of: n < 2 ^ (32 * length)";
+        return Arrays.copyOf(limbs, length);
+    }
+
+    /**
+     * Returns a new {@code NaturalNumber} with the value of the given limbs.
+     *
+     * @param limbs
+     *            little-endian limbs (leading zero limbs allowed)
+     * @return the value of limbs
+     * @ensures toNaturalNumber = [the value of limbs]
+     */
+    static NaturalNumber toNaturalNumber(int[] limbs) {
+        assert limbs != null : "Violation of: limbs is not null";
+        int[] q = limbs.clone();
+        int used = significantLength(q);
+        List<Long> chunks = new ArrayList<>();
+        do {
+            long rem = 0;
+            for (int i = used - 1; i >= 0; i--) {
+                long cur = (rem << LIMB_BITS) | (q[i] & MASK);
+                q[i] = (int) (cur / CHUNK);
+                rem = cur % CHUNK;
+            }
+            chunks.add(rem);
+            used = significantLength(q, used);
+        } while (used > 0);
+        StringBuilder decimal = new StringBuilder();
+        decimal.append(chunks.get(chunks.size() - 1));
+        for (int i = chunks.size() - 2; i >= 0; i--) {
+            String chunk = Long.toString(chunks.get(i));
+            for (int pad = chunk.length(); pad < CHUNK_DIGITS; pad++) {
+                decimal.append('0');
+            }
+            decimal.append(chunk);
+        }
+        return new NaturalNumber2(decimal.toString());
+    }
+
+    /**
+     * Reports the number of limbs of a once leading zero limbs are ignored.
+     *
+     * @param a
+     *            the limbs
+     * @return index of the most significant nonzero limb, plus one
+     */
+    static int significantLength(int[] a) {
+        return significantLength(a, a.length);
+    }
+
+    /**
+     * Reports the number of limbs of a[0, upTo) once leading zero limbs are
+     * ignored.
+     *
+     * @param a
+     *            the limbs
+     * @param upTo
+     *            number of low-order limbs to consider
+     * @return index of the most significant nonzero limb below upTo, plus one
+     */
+    static int significantLength(int[] a, int upTo) {
+        int len = upTo;
+        while (len > 0 && a[len - 1] == 0) {
+            len--;
+        }
+        return len;
+    }
+
+    /**
+     * Returns the value of a as a long if it is less than bound, without
+     * building a {@code NaturalNumber}.
+     *
+     * @param a
+     *            the limbs
+     * @param bound
+     *            the bound
+     * @return a if a < bound, else -1
+     * @requires bound > 0
+     */
+    static long valueBelow(int[] a, long bound) {
+        int len = significantLength(a);
+        long value = -1;
+        if (len <= 2) {
+            long v = 0;
+            if (len > 0) {
+                v = a[0] & MASK;
+            }
+            if (len > 1) {
+                v |= (long) a[1] << LIMB_BITS;
+            }
+            /*
+             * v is negative iff a >= 2^63, and then a > bound
+             */
+            if (v >= 0 && v < bound) {
+                value = v;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reports the number of significant bits in a.
+     *
+     * @param a
+     *            the limbs
+     * @return bit length of a (0 for zero)
+     */
+    static int bitLength(int[] a) {
+        int len = significantLength(a);
+        int bits = 0;
+        if (len > 0) {
+            bits = (len - 1) * LIMB_BITS
+                    + (LIMB_BITS - Integer.numberOfLeadingZeros(a[len - 1]));
+        }
+        return bits;
+    }
+
+    /**
+     * Reports bit i of a.
+     *
+     * @param a
+     *            the limbs
+     * @param i
+     *            bit index, 0 being least significant
+     * @return true iff bit i of a is set
+     */
+    static boolean testBit(int[] a, int i) {
+        int limb = i / LIMB_BITS;
+        return limb < a.length
+                && ((a[limb] >>> (i % LIMB_BITS)) & 1) != 0;
+    }
+
+    /**
+     * Compares a and b as unsigned numbers of possibly different lengths.
+     *
+     * @param a
+     *            the first number
+     * @param b
+     *            the second number
+     * @return negative, zero or positive as a is less than, equal to or greater
+     *         than b
+     */
+    static int compare(int[] a, int[] b) {
+        int la = significantLength(a);
+        int lb = significantLength(b);
+        int result = Integer.compare(la, lb);
+        for (int i = la - 1; result == 0 && i >= 0; i--) {
+            result = Integer.compareUnsigned(a[i], b[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether a is zero.
+     *
+     * @param a
+     *            the limbs
+     * @return true iff a = 0
+     */
+    static boolean isZero(int[] a) {
+        return significantLength(a) == 0;
+    }
+
+    /**
+     * Reports the index of the lowest set bit of a.
+     *
+     * @param a
+     *            the limbs
+     * @return number of trailing zero bits of a
+     * @requires a /= 0
+     */
+    static int lowestSetBit(int[] a) {
+        assert !isZero(a) : "Violation of: a /= 0";
+        int limb = 0;
+        while (a[limb] == 0) {
+            limb++;
+        }
+        return limb * LIMB_BITS + Integer.numberOfTrailingZeros(a[limb]);
+    }
+
+    /**
+     * Returns a shifted right by the given number of bits.
+     *
+     * @param a
+     *            the limbs
+     * @param bits
+     *            shift distance
+     * @return a / 2^bits, with as many limbs as a
+     * @requires bits >= 0
+     */
+    static int[] shiftRight(int[] a, int bits) {
+        assert bits >= 0 : "Violation of: bits >= 0";
+        int[] result = new int[a.length];
+        int limbs = bits / LIMB_BITS;
+        int rest = bits % LIMB_BITS;
+        for (int i = 0; i + limbs < a.length; i++) {
+            long lo = a[i + limbs] & MASK;
+            long hi = (i + limbs + 1 < a.length) ? a[i + limbs + 1] & MASK : 0;
+            result[i] = (int) (((hi << LIMB_BITS) | lo) >>> rest);
+        }
+        return result;
+    }
+
+    /**
+     * Adds a small value to a in place.
+     *
+     * @param a
+     *            the limbs
+     * @param v
+     *            value to add
+     * @updates a
+     * @requires v >= 0 and a + v < 2 ^ (32 * |a|)
+     */
+    static void addSmall(int[] a, int v) {
+        long carry = v;
+        for (int i = 0; i < a.length && carry != 0; i++) {
+            long t = (a[i] & MASK) + carry;
+            a[i] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        assert carry == 0 : "Violation of: a + v < 2 ^ (32 * |a|)";
+    }
+
+    /**
+     * Subtracts a small value from a in place.
+     *
+     * @param a
+     *            the limbs
+     * @param v
+     *            value to subtract
+     * @updates a
+     * @requires v >= 0 and a >= v
+     */
+    static void subtractSmall(int[] a, int v) {
+        long borrow = v;
+        for (int i = 0; i < a.length && borrow != 0; i++) {
+            long t = (a[i] & MASK) - borrow;
+            a[i] = (int) t;
+            borrow = (t < 0) ? 1 : 0;
+        }
+        assert borrow == 0 : "Violation of: a >= v";
+    }
+
+    /**
+     * Fills out with a number uniformly distributed in [0, bound].
+     *
+     * @param bound
+     *            top end of interval
+     * @param random
+     *            source of random bits
+     * @param out
+     *            receives the number
+     * @updates random
+     * @replaces out
+     * @requires |out| >= |bound|
+     */
+    static void uniform(int[] bound, RandomGenerator random, int[] out) {
+        int bits = bitLength(bound);
+        int limbs = (bits + LIMB_BITS - 1) / LIMB_BITS;
+        int topBits = bits - (limbs - 1) * LIMB_BITS;
+        Arrays.fill(out, 0);
+        do {
+            for (int i = 0; i < limbs; i++) {
+                out[i] = random.nextInt();
+            }
+            if (limbs > 0) {
+                out[limbs - 1] &= (int) (MASK >>> (LIMB_BITS - topBits));
+            }
+        } while (compare(out, bound) > 0);
+    }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Per-thread counts of the basic operations behind {@code CryptoUtilities}:
+ * modular multiplications, reductions of operands modulo a modulus, GCD loop
+ * steps, strong-test (witness) rounds and prefilter rejections. The counts
+ * are also attached to the JFR events recorded for {@code isPrime2} and
+ * {@code generateNextLikelyPrime}.
+ *
+ * <p>
+ * Counting is off unless the JVM is started with
+ * {@code -Dcryptoutilities.counters=true}. The switch is a static final
+ * constant, so when it is off the JIT compiler drops every counting site and
+ * the arithmetic runs exactly as it would without them.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class OperationCounters {
+
+    /**
+     * Whether counting is on.
+     */
+    static final boolean ENABLED = Boolean
+            .getBoolean("cryptoutilities.counters");
+
+    /**
+     * Counters of each thread.
+     */
+    private static final ThreadLocal<OperationCounters> CURRENT = ThreadLocal
+            .withInitial(OperationCounters::new);
+
+    /**
+     * All-zero counts, shared by every snapshot taken while counting is off;
+     * never incremented.
+     */
+    private static final OperationCounters ZERO = new OperationCounters();
+
+    /**
+     * Modular multiplications (and squarings).
+     */
+    long multiplications;
+
+    /**
+     * Reductions of an operand modulo a modulus.
+     */
+    long reductions;
+
+    /**
+     * Steps of the GCD loops.
+     */
+    long gcdSteps;
+
+    /**
+     * Strong-test rounds, one per base (or Lucas test).
+     */
+    long witnessRounds;
+
+    /**
+     * Candidates rejected by the small-prime prefilter.
+     */
+    long prefilterRejections;
+
+    /**
+     * Constructor; all counts start at zero.
+     */
+    private OperationCounters() {
+    }
+
+    /**
+     * Returns the counters of the calling thread, to be incremented. Only to
+     * be called when {@link #ENABLED} is true.
+     *
+     * @return the live counters of this thread
+     */
+    static OperationCounters current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Reports whether counting is on.
+     *
+     * @return true iff the JVM was started with
+     *         {@code -Dcryptoutilities.counters=true}
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns a copy of the calling thread's counts (a shared all-zero
+     * instance, allocating nothing, if counting is off).
+     *
+     * @return the counts so far on this thread
+     */
+    public static OperationCounters snapshot() {
+        OperationCounters copy = ZERO;
+        if (ENABLED) {
+            OperationCounters live = CURRENT.get();
+            copy = new OperationCounters();
+            copy.multiplications = live.multiplications;
+            copy.reductions = live.reductions;
+            copy.gcdSteps = live.gcdSteps;
+            copy.witnessRounds = live.witnessRounds;
+            copy.prefilterRejections = live.prefilterRejections;
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the counts accumulated since an earlier snapshot of the same
+     * thread (the shared all-zero instance if counting is off).
+     *
+     * @param start
+     *            the earlier snapshot
+     * @return this minus start, count by count
+     */
+    public OperationCounters since(OperationCounters start) {
+        assert start != null : "Violation of: start is not null";
+        OperationCounters delta = ZERO;
+        if (ENABLED) {
+            delta = new OperationCounters();
+            delta.multiplications = this.multiplications
+                    - start.multiplications;
+            delta.reductions = this.reductions - start.reductions;
+            delta.gcdSteps = this.gcdSteps - start.gcdSteps;
+            delta.witnessRounds = this.witnessRounds - start.witnessRounds;
+            delta.prefilterRejections = this.prefilterRejections
+                    - start.prefilterRejections;
+        }
+        return delta;
+    }
+
+    /**
+     * Reports the number of modular multiplications.
+     *
+     * @return modular multiplications and squarings
+     */
+    public long multiplications() {
+        return this.multiplications;
+    }
+
+    /**
+     * Reports the number of reductions of an operand modulo a modulus.
+     *
+     * @return reductions
+     */
+    public long reductions() {
+        return this.reductions;
+    }
+
+    /**
+     * Reports the number of GCD loop steps.
+     *
+     * @return GCD steps
+     */
+    public long gcdSteps() {
+        return this.gcdSteps;
+    }
+
+    /**
+     * Reports the number of strong-test rounds.
+     *
+     * @return witness rounds
+     */
+    public long witnessRounds() {
+        return this.witnessRounds;
+    }
+
+    /**
+     * Reports the number of candidates the small-prime prefilter rejected.
+     *
+     * @return prefilter rejections
+     */
+    public long prefilterRejections() {
+        return this.prefilterRejections;
+    }
+
+    @Override
+    public String toString() {
+        return "multiplications=" + this.multiplications + ", reductions="
+                + this.reductions + ", gcdSteps=" + this.gcdSteps
+                + ", witnessRounds=" + this.witnessRounds
+                + ", prefilterRejections=" + this.prefilterRejections;
+    }
+
+}
@@ -0,0 +1,145 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the random-base rounds of the strong probable-prime test for one
+ * candidate on a fork-join pool. Each leaf task has its own copy of the
+ * Montgomery context and its own random stream (split from the caller's
+ * stream before forking), and all tasks stop starting new rounds as soon as
+ * any of them finds a witness.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class ParallelWitnessTest {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParallelWitnessTest() {
+    }
+
+    /**
+     * Reports whether none of rounds random bases in [2, n-2] is a strong
+     * witness that n is composite.
+     *
+     * @param test
+     *            strong test for n (only copies of it are used)
+     * @param rounds
+     *            number of random bases to try
+     * @param random
+     *            source of the per-task random streams
+     * @param pool
+     *            pool to run the rounds on
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @updates random
+     * @requires n > 4 and rounds > 0
+     */
+    static boolean isStrongProbablePrime(StrongProbablePrimeTest test,
+            int rounds, SplittableRandom random, ForkJoinPool pool) {
+        AtomicBoolean witnessFound = new AtomicBoolean(false);
+        int leafRounds = Math.max(1,
+                (rounds + pool.getParallelism() - 1) / pool.getParallelism());
+        pool.invoke(new Rounds(test, 0, rounds, leafRounds, random.split(),
+                witnessFound));
+        return !witnessFound.get();
+    }
+
+    /**
+     * Task running rounds [from, to).
+     */
+    private static final class Rounds extends RecursiveAction {
+
+        /**
+         * Serialization id (tasks are never serialized).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Strong test to copy.
+         */
+        private final transient StrongProbablePrimeTest test;
+
+        /**
+         * First round of this task.
+         */
+        private final int from;
+
+        /**
+         * One past the last round of this task.
+         */
+        private final int to;
+
+        /**
+         * Most rounds a task runs without splitting.
+         */
+        private final int leafRounds;
+
+        /**
+         * This task's random stream.
+         */
+        private final SplittableRandom random;
+
+        /**
+         * Set once any task finds a witness.
+         */
+        private final AtomicBoolean witnessFound;
+
+        /**
+         * Constructor.
+         *
+         * @param test
+         *            strong test to copy
+         * @param from
+         *            first round
+         * @param to
+         *            one past the last round
+         * @param leafRounds
+         *            most rounds run without splitting
+         * @param random
+         *            this task's random stream
+         * @param witnessFound
+         *            shared cancellation flag
+         */
+        Rounds(StrongProbablePrimeTest test, int from, int to, int leafRounds,
+                SplittableRandom random, AtomicBoolean witnessFound) {
+            this.test = test;
+            this.from = from;
+            this.to = to;
+            this.leafRounds = leafRounds;
+            this.random = random;
+            this.witnessFound = witnessFound;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > this.leafRounds) {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new Rounds(this.test, this.from, mid, this.leafRounds,
+                                this.random.split(), this.witnessFound),
+                        new Rounds(this.test, mid, this.to, this.leafRounds,
+                                this.random.split(), this.witnessFound));
+            } else {
+                StrongProbablePrimeTest local = this.test.copy();
+                int[] bound = local.context().modulusLimbs().clone();
+                final int four = 4;
+                NaturalNumberLimbs.subtractSmall(bound, four);
+                int[] base = new int[bound.length];
+                for (int i = this.from; i < this.to
+                        && !this.witnessFound.get(); i++) {
+                    NaturalNumberLimbs.uniform(bound, this.random, base);
+                    NaturalNumberLimbs.addSmall(base, 2);
+                    if (local.isWitness(base)) {
+                        this.witnessFound.set(true);
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pollard's rho method in Brent's variant: iterates x -> x^2 + c mod n,
+ * compares each iterate with a saved one whose index doubles (Brent's cycle
+ * detection), and multiplies the differences together so one GCD with n
+ * covers a whole batch of them. Expected work is about sqrt(p) iterations for
+ * the smallest prime factor p of n.
+ *
+ * <p>
+ * All arithmetic is in Montgomery form; since R is prime to n, that changes
+ * neither the GCDs nor the fact that the iteration is a quadratic polynomial
+ * mod every prime factor of n.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class PollardRho {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private PollardRho() {
+    }
+
+    /**
+     * Number of differences multiplied together before each GCD.
+     */
+    static final int BATCH = 128;
+
+    /**
+     * Replaces y by f(y) = y^2 + c.
+     *
+     * @param context
+     *            context for n
+     * @param c
+     *            the constant, in Montgomery form
+     * @param y
+     *            the iterate, in Montgomery form
+     */
+    private static void step(MontgomeryContext context, int[] c, int[] y) {
+        context.multiply(y, y, y);
+        context.add(y, c, y);
+    }
+
+    /**
+     * Looks for a nontrivial factor of n.
+     *
+     * @param context
+     *            context for n (used by this thread only)
+     * @param c
+     *            constant of the iteration, in Montgomery form
+     * @param start
+     *            starting point, in Montgomery form
+     * @param maxIterations
+     *            most iterations before giving up
+     * @param stop
+     *            checked after every batch; when it is set, give up
+     * @param iterations
+     *            incremented as iterations are done
+     * @return a factor d of n with 1 < d < n, or null if none was found
+     * @requires n is odd and composite and c, start < n
+     */
+    static int[] findFactor(MontgomeryContext context, int[] c, int[] start,
+            long maxIterations, AtomicBoolean stop, LongAdder iterations) {
+        int[] n = context.modulusLimbs();
+        int k = context.size();
+        int[] x = new int[k];
+        int[] y = start.clone();
+        int[] ys = new int[k];
+        int[] q = context.one().clone();
+        int[] diff = new int[k];
+        int[] g = { 1 };
+        long r = 1;
+        long done = 0;
+        /*
+         * x holds the iterate at index r; the next r iterates are compared
+         * against it, BATCH at a time
+         */
+        while (NaturalNumberLimbs.bitLength(g) == 1 && done < maxIterations
+                && !stop.get()) {
+            System.arraycopy(y, 0, x, 0, k);
+            for (long i = 0; i < r; i++) {
+                step(context, c, y);
+            }
+            done += r;
+            iterations.add(r);
+            long checked = 0;
+            while (checked < r && NaturalNumberLimbs.bitLength(g) == 1
+                    && !stop.get()) {
+                System.arraycopy(y, 0, ys, 0, k);
+                long batch = Math.min(BATCH, r - checked);
+                for (long i = 0; i < batch; i++) {
+                    step(context, c, y);
+                    context.subtract(x, y, diff);
+                    context.multiply(q, diff, q);
+                }
+                g = GcdEngine.gcd(q, n);
+                checked += batch;
+                iterations.add(batch);
+            }
+            done += checked;
+            r *= 2;
+        }
+        if (NaturalNumberLimbs.compare(g, n) == 0) {
+            /*
+             * The last batch multiplied in differences that together hold
+             * every prime factor of n; redo it one GCD at a time from the
+             * saved iterate
+             */
+            g = new int[] { 1 };
+            boolean exhausted = false;
+            while (NaturalNumberLimbs.bitLength(g) == 1 && !exhausted) {
+                step(context, c, ys);
+                context.subtract(x, ys, diff);
+                g = GcdEngine.gcd(diff, n);
+                exhausted = NaturalNumberLimbs.compare(ys, y) == 0;
+            }
+        }
+        int[] factor = null;
+        if (NaturalNumberLimbs.bitLength(g) > 1
+                && NaturalNumberLimbs.compare(g, n) < 0) {
+            factor = g;
+        }
+        return factor;
+    }
+
+}
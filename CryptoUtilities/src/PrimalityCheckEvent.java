@@ -0,0 +1,22 @@
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for each call of {@code CryptoUtilities.isPrime2}.
+ *
+ * @author Kierra Smith
+ *
+ */
+@Name("CryptoUtilities.IsPrime2")
+@Label("isPrime2")
+@Description("One primality check")
+final class PrimalityCheckEvent extends CryptoUtilitiesEvent {
+
+    /**
+     * The verdict.
+     */
+    @Label("Likely Prime")
+    boolean prime;
+
+}
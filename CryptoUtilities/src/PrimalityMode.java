@@ -0,0 +1,22 @@
+/**
+ * The probable-prime tests {@code CryptoUtilities.isPrime2} can run on
+ * candidates too large for the exact single-word test.
+ *
+ * @author Kierra Smith
+ *
+ */
+public enum PrimalityMode {
+
+    /**
+     * Strong (Miller-Rabin) test: a fixed set of bases below 2^64, and 50
+     * random bases above; the error probability is at most 4^-50.
+     */
+    RANDOM_BASES,
+
+    /**
+     * Baillie-PSW: a strong test to base 2 and a strong Lucas test; no
+     * composite passing it is known, and it costs about three exponentiations.
+     */
+    BAILLIE_PSW
+
+}
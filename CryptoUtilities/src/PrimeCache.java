@@ -0,0 +1,667 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Persistent cache of primality results, kept in a memory-mapped file of
+ * fixed size so it survives from one run to the next. It holds three kinds of
+ * entries:
+ * <ul>
+ * <li>ranges [seed, p]: {@code generateNextLikelyPrime} took seed to the
+ * likely prime p, so every number in [seed, p) is composite and p is the next
+ * likely prime from any of them;</li>
+ * <li>known (likely) primes;</li>
+ * <li>known composites.</li>
+ * </ul>
+ * Once installed with {@code CryptoUtilities.setPrimeCache}, the cache is
+ * consulted by {@code isPrime2} and {@code generateNextLikelyPrime} before
+ * they do any work, and their results are added to it.
+ *
+ * <p>
+ * The file is a header followed by an append-only log of entries; the whole
+ * log is also indexed in memory. When an entry does not fit, the log is
+ * compacted: entries made redundant by later ones (a prime that ends a range,
+ * a composite inside a range, a range inside a wider one) are dropped, and if
+ * the rest still fills more than half the file, the oldest entries are
+ * evicted. The header records where the log ends and is written after the
+ * entries, so a run that stops halfway through appending an entry loses at
+ * most that entry. Compaction rewrites the log in place (the file stays
+ * mapped, and a mapped file cannot be replaced on every platform), so a run
+ * that stops partway through a compaction leaves a valid but smaller cache,
+ * having lost the entries not yet rewritten. The file must not be opened by
+ * two caches at once.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class PrimeCache implements AutoCloseable {
+
+    /**
+     * Identifies a cache file ("PRMC").
+     */
+    private static final int MAGIC = 0x50524D43;
+
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes taken by the header: magic, version and end of the log.
+     */
+    private static final int HEADER = 3 * Integer.BYTES;
+
+    /**
+     * Offset in the header of the end of the log.
+     */
+    private static final int END_OFFSET = 2 * Integer.BYTES;
+
+    /**
+     * Smallest file size accepted.
+     */
+    private static final long MIN_CAPACITY = 1 << 10;
+
+    /**
+     * Entry kind: a range [seed, p].
+     */
+    private static final int RANGE = 1;
+
+    /**
+     * Entry kind: a known prime.
+     */
+    private static final int PRIME = 2;
+
+    /**
+     * Entry kind: a known composite.
+     */
+    private static final int COMPOSITE = 3;
+
+    /**
+     * One entry of the log.
+     */
+    private static final class LogEntry {
+
+        /**
+         * RANGE, PRIME or COMPOSITE.
+         */
+        private final int kind;
+
+        /**
+         * The seed of a range, or the number.
+         */
+        private final NaturalNumber first;
+
+        /**
+         * The prime ending a range, or null.
+         */
+        private final NaturalNumber last;
+
+        /**
+         * Order in which the entry was added.
+         */
+        private final long sequence;
+
+        /**
+         * Constructor.
+         *
+         * @param kind
+         *            RANGE, PRIME or COMPOSITE
+         * @param first
+         *            the seed of a range, or the number
+         * @param last
+         *            the prime ending a range, or null
+         * @param sequence
+         *            order in which the entry was added
+         */
+        LogEntry(int kind, NaturalNumber first, NaturalNumber last,
+                long sequence) {
+            this.kind = kind;
+            this.first = first;
+            this.last = last;
+            this.sequence = sequence;
+        }
+
+    }
+
+    /**
+     * Channel of the cache file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Size of the file, in bytes.
+     */
+    private final int capacity;
+
+    /**
+     * Offset just past the last entry in the file.
+     */
+    private int end;
+
+    /**
+     * Ranges, by seed; two ranges never overlap.
+     */
+    private final TreeMap<NaturalNumber, LogEntry> ranges = new TreeMap<>();
+
+    /**
+     * Known primes.
+     */
+    private final TreeMap<NaturalNumber, LogEntry> primes = new TreeMap<>();
+
+    /**
+     * Known composites.
+     */
+    private final TreeMap<NaturalNumber, LogEntry> composites =
+            new TreeMap<>();
+
+    /**
+     * Sequence number of the next entry.
+     */
+    private long nextSequence = 0;
+
+    /**
+     * Lookups answered.
+     */
+    private long hits = 0;
+
+    /**
+     * Lookups not answered.
+     */
+    private long misses = 0;
+
+    /**
+     * Compactions done.
+     */
+    private long compactions = 0;
+
+    /**
+     * Constructor; opens the cache file, creating it if it does not exist.
+     * Entries of an existing file are loaded, and compacted if they exceed
+     * the new capacity. A new log is only started in a new or empty file; any
+     * other file without the cache header is left untouched.
+     *
+     * @param file
+     *            the cache file
+     * @param capacity
+     *            size of the file, in bytes
+     * @throws IOException
+     *             if the file cannot be opened or mapped, or is not empty and
+     *             not a cache file of this version
+     * @requires 2^10 <= capacity <= Integer.MAX_VALUE
+     */
+    public PrimeCache(Path file, long capacity) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert capacity >= MIN_CAPACITY : "Violation of: capacity >= 2^10";
+        assert capacity <= Integer.MAX_VALUE : ""
+                + "Violation of: capacity <= Integer.MAX_VALUE";
+        this.capacity = (int) capacity;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long existing = this.channel.size();
+            if (existing > 0) {
+                MappedByteBuffer old = this.channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0,
+                        Math.min(existing, Integer.MAX_VALUE));
+                if (existing < HEADER || old.getInt(0) != MAGIC
+                        || old.getInt(Integer.BYTES) != VERSION) {
+                    /*
+                     * Some other file: leave it exactly as it is
+                     */
+                    throw new IOException("Not a prime cache file: " + file);
+                }
+                this.load(old);
+            }
+            if (existing > capacity) {
+                this.channel.truncate(capacity);
+            }
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    capacity);
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(Integer.BYTES, VERSION);
+            if (this.end > capacity) {
+                this.compact();
+            } else if (this.end == 0) {
+                this.rewrite();
+            }
+        } catch (IOException | RuntimeException e) {
+            /*
+             * Do not leak the open channel
+             */
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the entries of an existing file, stopping at the first one that
+     * is malformed.
+     *
+     * @param old
+     *            the file contents
+     * @requires [old starts with a header of this version]
+     */
+    private void load(MappedByteBuffer old) {
+        int logEnd = old.getInt(END_OFFSET);
+        int at = HEADER;
+        boolean valid = logEnd <= old.capacity();
+        while (valid && at < logEnd) {
+            int kind = old.getInt(at);
+            int[] first = readNumber(old, at + Integer.BYTES, logEnd);
+            int[] last = null;
+            int next = -1;
+            if (first != null) {
+                next = at + Integer.BYTES + numberBytes(first);
+                if (kind == RANGE) {
+                    last = readNumber(old, next, logEnd);
+                    if (last != null) {
+                        next += numberBytes(last);
+                    }
+                }
+            }
+            valid = first != null && (kind == PRIME || kind == COMPOSITE
+                    || (kind == RANGE && last != null));
+            if (valid) {
+                this.index(kind, NaturalNumberLimbs.toNaturalNumber(first),
+                        (last == null) ? null
+                                : NaturalNumberLimbs.toNaturalNumber(last));
+                at = next;
+            }
+        }
+        this.end = at;
+    }
+
+    /**
+     * Reads a number (limb count, then limbs) of the log.
+     *
+     * @param source
+     *            the file contents
+     * @param at
+     *            offset of the number
+     * @param limit
+     *            end of the log
+     * @return the limbs, or null if they run past limit
+     */
+    private static int[] readNumber(MappedByteBuffer source, int at,
+            int limit) {
+        int[] limbs = null;
+        if (at + Integer.BYTES <= limit) {
+            int length = source.getInt(at);
+            if (length >= 0 && length <= (limit - at) / Integer.BYTES - 1) {
+                limbs = new int[length];
+                for (int i = 0; i < length; i++) {
+                    limbs[i] = source.getInt(at + (i + 1) * Integer.BYTES);
+                }
+            }
+        }
+        return limbs;
+    }
+
+    /**
+     * Returns the bytes a number takes in the log.
+     *
+     * @param limbs
+     *            limbs of the number, without leading zeros
+     * @return bytes of the limb count and the limbs
+     */
+    private static int numberBytes(int[] limbs) {
+        return (limbs.length + 1) * Integer.BYTES;
+    }
+
+    /**
+     * Returns the bytes an entry takes in the log.
+     *
+     * @param e
+     *            the entry
+     * @return bytes of the kind and the numbers
+     */
+    private static int entryBytes(LogEntry e) {
+        int bytes = Integer.BYTES
+                + numberBytes(NaturalNumberLimbs.fromNaturalNumber(e.first));
+        if (e.last != null) {
+            bytes += numberBytes(NaturalNumberLimbs.fromNaturalNumber(e.last));
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the range containing n, if any.
+     *
+     * @param n
+     *            the number
+     * @return the range [seed, p] with seed <= n <= p, or null
+     */
+    private LogEntry rangeOf(NaturalNumber n) {
+        Map.Entry<NaturalNumber, LogEntry> floor = this.ranges.floorEntry(n);
+        LogEntry range = null;
+        if (floor != null && n.compareTo(floor.getValue().last) <= 0) {
+            range = floor.getValue();
+        }
+        return range;
+    }
+
+    /**
+     * Adds an entry to the in-memory index, unless existing entries already
+     * imply it.
+     *
+     * @param kind
+     *            RANGE, PRIME or COMPOSITE
+     * @param first
+     *            the seed of a range, or the number (not aliased by anyone
+     *            else)
+     * @param last
+     *            the prime ending a range (not aliased by anyone else), or
+     *            null
+     * @return the entry added, or null if it was redundant
+     */
+    private LogEntry index(int kind, NaturalNumber first, NaturalNumber last) {
+        LogEntry added = null;
+        LogEntry range = this.rangeOf(first);
+        if (kind == RANGE) {
+            if (range == null || range.last.compareTo(last) != 0) {
+                /*
+                 * A range for the same prime starting above first is inside
+                 * the new one
+                 */
+                Map.Entry<NaturalNumber, LogEntry> above = this.ranges
+                        .higherEntry(first);
+                if (above != null
+                        && above.getValue().last.compareTo(last) == 0) {
+                    this.ranges.remove(above.getKey());
+                }
+                added = new LogEntry(kind, first, last, this.nextSequence);
+                this.ranges.put(first, added);
+            }
+        } else if (range == null) {
+            TreeMap<NaturalNumber, LogEntry> known = (kind == PRIME)
+                    ? this.primes : this.composites;
+            if (!known.containsKey(first)) {
+                added = new LogEntry(kind, first, null, this.nextSequence);
+                known.put(first, added);
+            }
+        }
+        if (added != null) {
+            this.nextSequence++;
+        }
+        return added;
+    }
+
+    /**
+     * Writes an entry at the end of the log and then moves the end past it.
+     *
+     * @param e
+     *            the entry
+     * @return false iff the entry did not fit
+     */
+    private boolean append(LogEntry e) {
+        int bytes = entryBytes(e);
+        boolean fits = this.end + bytes <= this.capacity;
+        if (fits) {
+            int at = this.end;
+            this.buffer.putInt(at, e.kind);
+            at = this.writeNumber(at + Integer.BYTES, e.first);
+            if (e.last != null) {
+                this.writeNumber(at, e.last);
+            }
+            this.end += bytes;
+            this.buffer.putInt(END_OFFSET, this.end);
+        }
+        return fits;
+    }
+
+    /**
+     * Writes a number (limb count, then limbs) into the file.
+     *
+     * @param at
+     *            offset to write at
+     * @param n
+     *            the number
+     * @return offset just past the number
+     */
+    private int writeNumber(int at, NaturalNumber n) {
+        int[] limbs = NaturalNumberLimbs.fromNaturalNumber(n);
+        this.buffer.putInt(at, limbs.length);
+        for (int i = 0; i < limbs.length; i++) {
+            this.buffer.putInt(at + (i + 1) * Integer.BYTES, limbs[i]);
+        }
+        return at + numberBytes(limbs);
+    }
+
+    /**
+     * Rewrites the log from the in-memory index, oldest entry first. The end
+     * is reset before and set after the entries are written.
+     */
+    private void rewrite() {
+        List<LogEntry> live = new ArrayList<>(this.ranges.values());
+        live.addAll(this.primes.values());
+        live.addAll(this.composites.values());
+        live.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        this.end = HEADER;
+        this.buffer.putInt(END_OFFSET, this.end);
+        for (LogEntry e : live) {
+            this.append(e);
+        }
+    }
+
+    /**
+     * Adds an entry, compacting the log first if it does not fit.
+     *
+     * @param kind
+     *            RANGE, PRIME or COMPOSITE
+     * @param first
+     *            the seed of a range, or the number
+     * @param last
+     *            the prime ending a range, or null
+     */
+    private void add(int kind, NaturalNumber first, NaturalNumber last) {
+        LogEntry e = this.index(kind, new NaturalNumber2(first),
+                (last == null) ? null : new NaturalNumber2(last));
+        if (e != null && !this.append(e)) {
+            this.compact();
+            this.append(e);
+        }
+    }
+
+    /**
+     * Compacts the log: drops entries that others imply, then, if the rest
+     * fills more than half the file, the oldest entries until it does not.
+     */
+    public synchronized void compact() {
+        this.primes.keySet().removeIf(p -> this.rangeOf(p) != null);
+        this.composites.keySet().removeIf(c -> this.rangeOf(c) != null);
+        List<LogEntry> live = new ArrayList<>(this.ranges.values());
+        live.addAll(this.primes.values());
+        live.addAll(this.composites.values());
+        live.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        long bytes = 0;
+        for (LogEntry e : live) {
+            bytes += entryBytes(e);
+        }
+        final long target = (this.capacity - HEADER) / 2;
+        for (int i = 0; i < live.size() && bytes > target; i++) {
+            LogEntry e = live.get(i);
+            bytes -= entryBytes(e);
+            if (e.kind == RANGE) {
+                this.ranges.remove(e.first);
+            } else if (e.kind == PRIME) {
+                this.primes.remove(e.first);
+            } else {
+                this.composites.remove(e.first);
+            }
+        }
+        this.rewrite();
+        this.compactions++;
+    }
+
+    /**
+     * Returns the next likely prime at least n, if known.
+     *
+     * @param n
+     *            the seed
+     * @return the smallest likely prime p >= n, or null if not known
+     */
+    public synchronized NaturalNumber nextLikelyPrime(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        LogEntry range = this.rangeOf(n);
+        NaturalNumber result = null;
+        if (range != null) {
+            result = new NaturalNumber2(range.last);
+        } else if (this.primes.containsKey(n)) {
+            result = new NaturalNumber2(n);
+        }
+        if (result != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n is known to be prime or composite.
+     *
+     * @param n
+     *            the number
+     * @return TRUE if n is a known likely prime, FALSE if n is a known
+     *         composite, null if neither
+     */
+    public synchronized Boolean isPrime(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        Boolean known = null;
+        LogEntry range = this.rangeOf(n);
+        if (range != null) {
+            known = n.compareTo(range.last) == 0;
+        } else if (this.primes.containsKey(n)) {
+            known = Boolean.TRUE;
+        } else if (this.composites.containsKey(n)) {
+            known = Boolean.FALSE;
+        }
+        if (known != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return known;
+    }
+
+    /**
+     * Records that p is the next likely prime at least seed.
+     *
+     * @param seed
+     *            the seed
+     * @param p
+     *            the likely prime found from it
+     * @requires seed <= p and [no likely prime lies in [seed, p)]
+     */
+    public synchronized void addRange(NaturalNumber seed, NaturalNumber p) {
+        assert seed != null : "Violation of: seed is not null";
+        assert p != null : "Violation of: p is not null";
+        assert seed.compareTo(p) <= 0 : "Violation of: seed <= p";
+        this.add(RANGE, seed, p);
+    }
+
+    /**
+     * Records that p is a likely prime.
+     *
+     * @param p
+     *            the likely prime
+     */
+    public synchronized void addPrime(NaturalNumber p) {
+        assert p != null : "Violation of: p is not null";
+        this.add(PRIME, p, null);
+    }
+
+    /**
+     * Records that c is composite.
+     *
+     * @param c
+     *            the composite
+     */
+    public synchronized void addComposite(NaturalNumber c) {
+        assert c != null : "Violation of: c is not null";
+        this.add(COMPOSITE, c, null);
+    }
+
+    /**
+     * Reports the number of entries held.
+     *
+     * @return ranges, primes and composites held
+     */
+    public synchronized int size() {
+        return this.ranges.size() + this.primes.size()
+                + this.composites.size();
+    }
+
+    /**
+     * Reports the bytes of the file in use, including entries that a
+     * compaction would drop.
+     *
+     * @return offset of the end of the log
+     */
+    public synchronized long bytesUsed() {
+        return this.end;
+    }
+
+    /**
+     * Reports the size of the file.
+     *
+     * @return capacity, in bytes
+     */
+    public long capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Reports the number of lookups answered from the cache.
+     *
+     * @return hits since the cache was opened
+     */
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Reports the number of lookups the cache could not answer.
+     *
+     * @return misses since the cache was opened
+     */
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    /**
+     * Reports the number of compactions done.
+     *
+     * @return compactions since the cache was opened
+     */
+    public synchronized long compactions() {
+        return this.compactions;
+    }
+
+    /**
+     * Writes the mapped file to disk and closes it.
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+    }
+
+}
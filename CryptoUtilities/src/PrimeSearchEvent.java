@@ -0,0 +1,24 @@
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for each call of
+ * {@code CryptoUtilities.generateNextLikelyPrime}; the operand is the prime
+ * found.
+ *
+ * @author Kierra Smith
+ *
+ */
+@Name("CryptoUtilities.GenerateNextLikelyPrime")
+@Label("generateNextLikelyPrime")
+@Description("One search for the next likely prime")
+final class PrimeSearchEvent extends CryptoUtilitiesEvent {
+
+    /**
+     * Candidates given the probabilistic test.
+     */
+    @Label("Candidates Tested")
+    long candidatesTested;
+
+}
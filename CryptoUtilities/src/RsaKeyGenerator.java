@@ -0,0 +1,403 @@
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * A pipeline that keeps a bounded pool of worker threads searching for RSA
+ * primes and hands out finished key pairs through a bounded queue. Each worker
+ * searches for one prime at a time; the first worker to finish waits (without
+ * blocking) for the next one, so p and q of every key are found concurrently.
+ * When the queue is full the workers block, so at most {@code capacity} keys
+ * are ever generated ahead of demand.
+ *
+ * <p>
+ * For a single key, {@link #generate(int)} runs the two prime searches in
+ * parallel without a dedicated pool.
+ *
+ * <p>
+ * Primes are drawn from a {@code SecureRandom}, never from the random source
+ * of {@code CryptoUtilities} (which need not be cryptographically strong, and
+ * may even be seeded for reproducible runs), and never go through its prime
+ * cache, which would write them to disk and could hand them out again.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class RsaKeyGenerator implements AutoCloseable {
+
+    /**
+     * Default public exponent (2^16 + 1).
+     */
+    public static final int DEFAULT_EXPONENT = 65537;
+
+    /**
+     * Smallest modulus bit length accepted.
+     */
+    public static final int MIN_BITS = 16;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Number of generators created, used to name worker threads.
+     */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /**
+     * Bit length of the modulus of every key.
+     */
+    private final int bits;
+
+    /**
+     * Public exponent of every key.
+     */
+    private final NaturalNumber exponent;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int workers;
+
+    /**
+     * Source of the starting points and witnesses of the prime searches.
+     */
+    private final SecureRandom random;
+
+    /**
+     * Finished keys waiting to be taken.
+     */
+    private final BlockingQueue<RsaKeyPair> keys;
+
+    /**
+     * Worker threads, or null until start is called.
+     */
+    private volatile ExecutorService pool = null;
+
+    /**
+     * A prime to be p (the larger share of the modulus) found by one worker
+     * and not yet paired with another, or null.
+     */
+    private NaturalNumber waitingLarger = null;
+
+    /**
+     * A prime to be q found by one worker and not yet paired with another, or
+     * null.
+     */
+    private NaturalNumber waitingSmaller = null;
+
+    /**
+     * Number of keys generated since start.
+     */
+    private final LongAdder generated = new LongAdder();
+
+    /**
+     * Value of System.nanoTime() when start was called.
+     */
+    private volatile long startTime;
+
+    /**
+     * Constructor using the default public exponent.
+     *
+     * @param bits
+     *            bit length of the modulus of every key
+     * @param workers
+     *            number of worker threads
+     * @param capacity
+     *            most keys generated ahead of demand
+     * @requires bits >= MIN_BITS and workers > 0 and capacity > 0
+     */
+    public RsaKeyGenerator(int bits, int workers, int capacity) {
+        this(bits, new NaturalNumber2(DEFAULT_EXPONENT), workers, capacity);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bits
+     *            bit length of the modulus of every key
+     * @param exponent
+     *            public exponent of every key
+     * @param workers
+     *            number of worker threads
+     * @param capacity
+     *            most keys generated ahead of demand
+     * @requires bits >= MIN_BITS and exponent is odd and exponent > 1 and
+     *           workers > 0 and capacity > 0
+     */
+    public RsaKeyGenerator(int bits, NaturalNumber exponent, int workers,
+            int capacity) {
+        assert bits >= MIN_BITS : "Violation of: bits >= MIN_BITS";
+        assert exponent != null : "Violation of: exponent is not null";
+        assert !CryptoUtilities.isEven(exponent)
+                : "Violation of: exponent is odd";
+        assert CryptoUtilities.compareToInt(exponent, 1) > 0
+                : "Violation of: exponent > 1";
+        assert workers > 0 : "Violation of: workers > 0";
+        assert capacity > 0 : "Violation of: capacity > 0";
+        this.bits = bits;
+        this.exponent = new NaturalNumber2(exponent);
+        this.workers = workers;
+        this.random = new SecureRandom();
+        this.keys = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Returns a random prime of exactly the given bit length, with its top two
+     * bits set, such that e is invertible modulo the prime minus one.
+     *
+     * @param primeBits
+     *            bit length of the prime
+     * @param e
+     *            the public exponent
+     * @param random
+     *            source of the starting point and witnesses of the search
+     * @return the prime
+     * @updates random
+     * @requires primeBits >= MIN_BITS / 2
+     */
+    static NaturalNumber randomPrime(int primeBits, NaturalNumber e,
+            SecureRandom random) {
+        /*
+         * Start the search at 2^(b-1) + 2^(b-2) + [random below 2^(b-2)], so
+         * the product of two such primes has exactly the sum of their bit
+         * lengths, and retry in the (negligible) case that the next prime has
+         * outgrown b bits
+         */
+        int[] high = new int[(primeBits + NaturalNumberLimbs.LIMB_BITS - 1)
+                / NaturalNumberLimbs.LIMB_BITS];
+        setBit(high, primeBits - 1);
+        setBit(high, primeBits - 2);
+        int[] range = new int[high.length];
+        setBit(range, primeBits - 2);
+        NaturalNumberLimbs.subtractSmall(range, 1);
+        NaturalNumber base = NaturalNumberLimbs.toNaturalNumber(high);
+        NaturalNumber bound = NaturalNumberLimbs.toNaturalNumber(range);
+        NaturalNumber prime;
+        boolean suitable;
+        do {
+            prime = CryptoUtilities.randomNumber(bound, random);
+            prime.add(base);
+            CryptoUtilities.searchNextLikelyPrime(prime, random);
+            NaturalNumber primeMinusOne = new NaturalNumber2(prime);
+            primeMinusOne.decrement();
+            NaturalNumber gcd = new NaturalNumber2(e);
+            CryptoUtilities.reduceToGCD(gcd, primeMinusOne);
+            suitable = CryptoUtilities.isOne(gcd) && NaturalNumberLimbs
+                    .bitLength(NaturalNumberLimbs
+                            .fromNaturalNumber(prime)) == primeBits;
+        } while (!suitable);
+        return prime;
+    }
+
+    /**
+     * Sets bit i of a.
+     *
+     * @param a
+     *            the limbs
+     * @param i
+     *            bit index, 0 being least significant
+     * @updates a
+     * @requires 0 <= i < 32 * |a|
+     */
+    private static void setBit(int[] a, int i) {
+        a[i / NaturalNumberLimbs.LIMB_BITS] |= 1 << (i
+                % NaturalNumberLimbs.LIMB_BITS);
+    }
+
+    /**
+     * Generates one key pair with the default public exponent, searching for
+     * p and q in parallel.
+     *
+     * @param bits
+     *            bit length of the modulus
+     * @return the key pair
+     * @requires bits >= MIN_BITS
+     */
+    public static RsaKeyPair generate(int bits) {
+        assert bits >= MIN_BITS : "Violation of: bits >= MIN_BITS";
+        NaturalNumber e = new NaturalNumber2(DEFAULT_EXPONENT);
+        RsaKeyPair pair = null;
+        SecureRandom random = new SecureRandom();
+        while (pair == null) {
+            CompletableFuture<NaturalNumber> p = CompletableFuture
+                    .supplyAsync(() -> randomPrime(bits - bits / 2,
+                            new NaturalNumber2(DEFAULT_EXPONENT), random));
+            NaturalNumber q = randomPrime(bits / 2, e, random);
+            NaturalNumber first = p.join();
+            if (!first.equals(q)) {
+                pair = RsaKeyPair.derive(first, q, e);
+            }
+        }
+        return pair;
+    }
+
+    /**
+     * Starts the worker threads.
+     *
+     * @requires start has not been called
+     */
+    public synchronized void start() {
+        assert this.pool == null : "Violation of: start has not been called";
+        int id = INSTANCES.incrementAndGet();
+        AtomicInteger thread = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r,
+                    "rsa-keygen-" + id + "-" + thread.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        this.pool = Executors.newFixedThreadPool(this.workers, factory);
+        this.startTime = System.nanoTime();
+        for (int i = 0; i < this.workers; i++) {
+            this.pool.execute(this::work);
+        }
+    }
+
+    /**
+     * Body of every worker: find primes until interrupted, pairing each one
+     * with the one found before it.
+     */
+    private void work() {
+        /*
+         * The modulus gets bits - bits/2 bits from p and bits/2 from q, so
+         * alternate the two sizes between successive primes of one worker
+         */
+        boolean larger = true;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                int primeBits = larger ? this.bits - this.bits / 2
+                        : this.bits / 2;
+                NaturalNumber e = new NaturalNumber2(this.exponent);
+                NaturalNumber prime = randomPrime(primeBits, e, this.random);
+                NaturalNumber partner = this.pair(prime, larger);
+                if (partner != null) {
+                    NaturalNumber p = larger ? prime : partner;
+                    NaturalNumber q = larger ? partner : prime;
+                    RsaKeyPair pair = null;
+                    if (!p.equals(q)) {
+                        pair = RsaKeyPair.derive(p, q, e);
+                    }
+                    if (pair != null) {
+                        this.keys.put(pair);
+                        this.generated.increment();
+                    }
+                }
+                larger = !larger;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Pairs prime with a prime of the other role left waiting by another
+     * worker, or leaves it waiting in the slot of its own role if there is
+     * none. When bits is even the roles have the same size, so a prime waiting
+     * in either slot will do.
+     *
+     * @param prime
+     *            the prime just found
+     * @param larger
+     *            whether prime is to be p (the larger share of the modulus)
+     * @return the partner, or null if prime was left waiting
+     */
+    private synchronized NaturalNumber pair(NaturalNumber prime,
+            boolean larger) {
+        boolean sameSize = this.bits % 2 == 0;
+        NaturalNumber partner = null;
+        if (this.waitingSmaller != null && (larger || sameSize)) {
+            partner = this.waitingSmaller;
+            this.waitingSmaller = null;
+        } else if (this.waitingLarger != null && (!larger || sameSize)) {
+            partner = this.waitingLarger;
+            this.waitingLarger = null;
+        } else if (larger) {
+            this.waitingLarger = prime;
+        } else {
+            this.waitingSmaller = prime;
+        }
+        return partner;
+    }
+
+    /**
+     * Removes and returns the next key pair, waiting for one if necessary.
+     *
+     * @return the key pair
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     * @requires start has been called
+     */
+    public RsaKeyPair take() throws InterruptedException {
+        assert this.pool != null : "Violation of: start has been called";
+        return this.keys.take();
+    }
+
+    /**
+     * Returns an unbounded stream of key pairs taken from this generator;
+     * limit it, e.g., with {@code stream().limit(k)}.
+     *
+     * @return the stream
+     * @requires start has been called
+     */
+    public Stream<RsaKeyPair> stream() {
+        assert this.pool != null : "Violation of: start has been called";
+        return Stream.generate(() -> {
+            RsaKeyPair pair = null;
+            try {
+                pair = this.keys.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "Interrupted while waiting for a key pair", ex);
+            }
+            return pair;
+        });
+    }
+
+    /**
+     * Reports how many key pairs have been generated since start.
+     *
+     * @return number of key pairs generated
+     */
+    public long keysGenerated() {
+        return this.generated.sum();
+    }
+
+    /**
+     * Reports the average generation rate since start.
+     *
+     * @return key pairs generated per second, or 0 before start
+     */
+    public double keysPerSecond() {
+        double rate = 0.0;
+        if (this.pool != null) {
+            double seconds = (System.nanoTime() - this.startTime)
+                    / NANOS_PER_SECOND;
+            rate = this.generated.sum() / seconds;
+        }
+        return rate;
+    }
+
+    /**
+     * Stops the worker threads. Keys already queued can still be taken.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.pool != null) {
+            this.pool.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * An RSA key pair: the public modulus and exponent, the private exponent, and
+ * the prime factors with the Chinese-remainder parameters derived from them.
+ * Every accessor returns a fresh copy, so a key pair can be shared freely
+ * between threads.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class RsaKeyPair {
+
+    /**
+     * Modulus n = p * q.
+     */
+    private final NaturalNumber modulus;
+
+    /**
+     * Public exponent e.
+     */
+    private final NaturalNumber publicExponent;
+
+    /**
+     * Private exponent d = e^-1 mod (p-1)(q-1).
+     */
+    private final NaturalNumber privateExponent;
+
+    /**
+     * First prime factor p.
+     */
+    private final NaturalNumber p;
+
+    /**
+     * Second prime factor q.
+     */
+    private final NaturalNumber q;
+
+    /**
+     * d mod (p - 1).
+     */
+    private final NaturalNumber dP;
+
+    /**
+     * d mod (q - 1).
+     */
+    private final NaturalNumber dQ;
+
+    /**
+     * q^-1 mod p.
+     */
+    private final NaturalNumber qInv;
+
+    /**
+     * Derives a key pair from two distinct primes and a public exponent.
+     *
+     * @param p
+     *            first prime
+     * @param q
+     *            second prime
+     * @param e
+     *            public exponent
+     * @return the key pair, or null if e is not invertible modulo (p-1)(q-1)
+     * @requires p and q are distinct primes > 2 and e > 1
+     */
+    static RsaKeyPair derive(NaturalNumber p, NaturalNumber q,
+            NaturalNumber e) {
+        NaturalNumber pMinusOne = new NaturalNumber2(p);
+        pMinusOne.decrement();
+        NaturalNumber qMinusOne = new NaturalNumber2(q);
+        qMinusOne.decrement();
+        NaturalNumber phi = new NaturalNumber2(pMinusOne);
+        phi.multiply(qMinusOne);
+        NaturalNumber d = new NaturalNumber2(e);
+        RsaKeyPair pair = null;
+        if (CryptoUtilities.inverseMod(d, phi)) {
+            NaturalNumber n = new NaturalNumber2(p);
+            n.multiply(q);
+            NaturalNumber dP = new NaturalNumber2(d);
+            dP = dP.divide(pMinusOne);
+            NaturalNumber dQ = new NaturalNumber2(d);
+            dQ = dQ.divide(qMinusOne);
+            NaturalNumber qInv = new NaturalNumber2(q);
+            boolean invertible = CryptoUtilities.inverseMod(qInv, p);
+            assert invertible : "Violation of: p and q are distinct primes";
+            pair = new RsaKeyPair(n, e, d, p, q, dP, dQ, qInv);
+        }
+        return pair;
+    }
+
+    /**
+     * Constructor; takes copies of all its arguments.
+     *
+     * @param n
+     *            modulus
+     * @param e
+     *            public exponent
+     * @param d
+     *            private exponent
+     * @param p
+     *            first prime
+     * @param q
+     *            second prime
+     * @param dP
+     *            d mod (p - 1)
+     * @param dQ
+     *            d mod (q - 1)
+     * @param qInv
+     *            q^-1 mod p
+     */
+    private RsaKeyPair(NaturalNumber n, NaturalNumber e, NaturalNumber d,
+            NaturalNumber p, NaturalNumber q, NaturalNumber dP,
+            NaturalNumber dQ, NaturalNumber qInv) {
+        this.modulus = new NaturalNumber2(n);
+        this.publicExponent = new NaturalNumber2(e);
+        this.privateExponent = new NaturalNumber2(d);
+        this.p = new NaturalNumber2(p);
+        this.q = new NaturalNumber2(q);
+        this.dP = new NaturalNumber2(dP);
+        this.dQ = new NaturalNumber2(dQ);
+        this.qInv = new NaturalNumber2(qInv);
+    }
+
+    /**
+     * Returns the modulus n = p * q.
+     *
+     * @return a copy of n
+     */
+    public NaturalNumber modulus() {
+        return new NaturalNumber2(this.modulus);
+    }
+
+    /**
+     * Returns the public exponent e.
+     *
+     * @return a copy of e
+     */
+    public NaturalNumber publicExponent() {
+        return new NaturalNumber2(this.publicExponent);
+    }
+
+    /**
+     * Returns the private exponent d.
+     *
+     * @return a copy of d
+     */
+    public NaturalNumber privateExponent() {
+        return new NaturalNumber2(this.privateExponent);
+    }
+
+    /**
+     * Returns the first prime factor p.
+     *
+     * @return a copy of p
+     */
+    public NaturalNumber p() {
+        return new NaturalNumber2(this.p);
+    }
+
+    /**
+     * Returns the second prime factor q.
+     *
+     * @return a copy of q
+     */
+    public NaturalNumber q() {
+        return new NaturalNumber2(this.q);
+    }
+
+    /**
+     * Returns the CRT exponent d mod (p - 1).
+     *
+     * @return a copy of dP
+     */
+    public NaturalNumber dP() {
+        return new NaturalNumber2(this.dP);
+    }
+
+    /**
+     * Returns the CRT exponent d mod (q - 1).
+     *
+     * @return a copy of dQ
+     */
+    public NaturalNumber dQ() {
+        return new NaturalNumber2(this.dQ);
+    }
+
+    /**
+     * Returns the CRT coefficient q^-1 mod p.
+     *
+     * @return a copy of qInv
+     */
+    public NaturalNumber qInv() {
+        return new NaturalNumber2(this.qInv);
+    }
+
+    /**
+     * Updates m to m^e mod n (encryption, or signature verification).
+     *
+     * @param m
+     *            the message
+     * @updates m
+     * @ensures m = #m ^ (e) mod n
+     */
+    public void publicOperation(NaturalNumber m) {
+        CryptoUtilities.powerMod(m, this.publicExponent(), this.modulus());
+    }
+
+    /**
+     * Updates c to c^d mod n (decryption, or signing), using the CRT
+     * parameters.
+     *
+     * @param c
+     *            the ciphertext
+     * @updates c
+     * @requires c < n
+     * @ensures c = #c ^ (d) mod n
+     */
+    public void privateOperation(NaturalNumber c) {
+        assert c.compareTo(this.modulus) < 0 : "Violation of: c < n";
+        CryptoUtilities.powerModCrt(c, this.p(), this.q(), this.dP(),
+                this.dQ(), this.qInv());
+    }
+
+}
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Trial division by a precomputed table of small odd primes, used to throw
+ * out most composite candidates before any modular exponentiation is done.
+ * Consecutive primes are grouped so that each group's product fits in an
+ * unsigned 32-bit word; a candidate is reduced modulo every group product in
+ * one pass over its limbs, and only those word-sized residues are then reduced
+ * modulo the individual primes.
+ *
+ * <p>
+ * Every call to {@link #hasSmallFactor(int[])} is counted, so the fraction of
+ * candidates the prefilter rejects can be read with {@link #hitRate()}.
+ *
+ * @author Kierra Smith
+ *
+ */
+public final class SmallPrimePrefilter {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SmallPrimePrefilter() {
+    }
+
+    /**
+     * Useful constant, not a magic number: 3.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Number of odd primes in the table.
+     */
+    static final int PRIME_COUNT = 2048;
+
+    /**
+     * The first PRIME_COUNT odd primes, in increasing order.
+     */
+    private static final int[] PRIMES = oddPrimes(PRIME_COUNT);
+
+    /**
+     * Index into PRIMES of the first prime of each group, followed by
+     * PRIME_COUNT as a sentinel.
+     */
+    private static final int[] GROUP_START;
+
+    /**
+     * Product of the primes in each group (less than 2^32).
+     */
+    private static final long[] GROUP_PRODUCT;
+
+    static {
+        int[] starts = new int[PRIME_COUNT + 1];
+        long[] products = new long[PRIME_COUNT];
+        int groups = 0;
+        int i = 0;
+        while (i < PRIME_COUNT) {
+            starts[groups] = i;
+            long product = PRIMES[i];
+            i++;
+            while (i < PRIME_COUNT
+                    && product * PRIMES[i] <= NaturalNumberLimbs.MASK) {
+                product *= PRIMES[i];
+                i++;
+            }
+            products[groups] = product;
+            groups++;
+        }
+        starts[groups] = PRIME_COUNT;
+        GROUP_START = Arrays.copyOf(starts, groups + 1);
+        GROUP_PRODUCT = Arrays.copyOf(products, groups);
+    }
+
+    /**
+     * Number of candidates checked.
+     */
+    private static final LongAdder CHECKED = new LongAdder();
+
+    /**
+     * Number of candidates rejected because a small prime divides them.
+     */
+    private static final LongAdder REJECTED = new LongAdder();
+
+    /**
+     * Returns the first count odd primes.
+     *
+     * @param count
+     *            number of primes wanted
+     * @return the primes 3, 5, 7, ... in increasing order
+     */
+    private static int[] oddPrimes(int count) {
+        /*
+         * Grow a sieve of Eratosthenes until it holds enough primes
+         */
+        final int initialLimit = 1 << 15;
+        int limit = initialLimit;
+        int[] primes = new int[count];
+        int found = 0;
+        while (found < count) {
+            boolean[] composite = new boolean[limit];
+            found = 0;
+            for (int p = THREE; p < limit && found < count; p += 2) {
+                if (!composite[p]) {
+                    primes[found] = p;
+                    found++;
+                    for (long q = (long) p * p; q < limit; q += 2L * p) {
+                        composite[(int) q] = true;
+                    }
+                }
+            }
+            limit *= 2;
+        }
+        return primes;
+    }
+
+    /**
+     * Returns the prime at the given position of the table.
+     *
+     * @param i
+     *            position in the table
+     * @return the i-th odd prime (0 gives 3)
+     * @requires 0 <= i < PRIME_COUNT
+     */
+    static int prime(int i) {
+        return PRIMES[i];
+    }
+
+    /**
+     * Returns n modulo the product of the primes in group g.
+     *
+     * @param n
+     *            limbs of the number
+     * @param len
+     *            number of significant limbs of n
+     * @param g
+     *            the group
+     * @return n mod GROUP_PRODUCT[g]
+     */
+    private static long groupResidue(int[] n, int len, int g) {
+        long product = GROUP_PRODUCT[g];
+        long r = 0;
+        for (int i = len - 1; i >= 0; i--) {
+            r = Long.remainderUnsigned((r << NaturalNumberLimbs.LIMB_BITS)
+                    | (n[i] & NaturalNumberLimbs.MASK), product);
+        }
+        return r;
+    }
+
+    /**
+     * Computes the residue of n modulo every prime in the table.
+     *
+     * @param n
+     *            limbs of the number
+     * @param residues
+     *            receives n mod prime(i) in position i
+     * @replaces residues
+     * @requires |residues| >= PRIME_COUNT
+     */
+    static void residues(int[] n, int[] residues) {
+        int len = NaturalNumberLimbs.significantLength(n);
+        for (int g = 0; g < GROUP_PRODUCT.length; g++) {
+            long r = groupResidue(n, len, g);
+            for (int j = GROUP_START[g]; j < GROUP_START[g + 1]; j++) {
+                residues[j] = (int) (r % PRIMES[j]);
+            }
+        }
+    }
+
+    /**
+     * Reports whether n has a prime factor in the table other than itself.
+     * Counts towards {@link #hitRate()}.
+     *
+     * @param n
+     *            limbs of the number
+     * @return true iff some odd prime p < n in the table divides n
+     */
+    static boolean hasSmallFactor(int[] n) {
+        int len = NaturalNumberLimbs.significantLength(n);
+        boolean found = false;
+        for (int g = 0; g < GROUP_PRODUCT.length && !found; g++) {
+            long r = groupResidue(n, len, g);
+            for (int j = GROUP_START[g]; j < GROUP_START[g + 1]
+                    && !found; j++) {
+                found = r % PRIMES[j] == 0
+                        && !(len == 1 && n[0] == PRIMES[j]);
+            }
+        }
+        CHECKED.increment();
+        if (found) {
+            REJECTED.increment();
+            if (OperationCounters.ENABLED) {
+                OperationCounters.current().prefilterRejections++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reports whether n has a prime factor in the table other than itself.
+     * Counts towards {@link #hitRate()}.
+     *
+     * @param n
+     *            the number
+     * @return true iff some odd prime p < n in the table divides n
+     */
+    public static boolean hasSmallFactor(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        return hasSmallFactor(NaturalNumberLimbs.fromNaturalNumber(n));
+    }
+
+    /**
+     * Reports how many candidates the prefilter has checked.
+     *
+     * @return number of candidates checked since the last reset
+     */
+    public static long candidatesChecked() {
+        return CHECKED.sum();
+    }
+
+    /**
+     * Reports how many candidates the prefilter has rejected.
+     *
+     * @return number of candidates with a small factor since the last reset
+     */
+    public static long candidatesRejected() {
+        return REJECTED.sum();
+    }
+
+    /**
+     * Reports the fraction of checked candidates that were rejected.
+     *
+     * @return rejected / checked, or 0 if nothing has been checked
+     */
+    public static double hitRate() {
+        long checked = CHECKED.sum();
+        double rate = 0.0;
+        if (checked > 0) {
+            rate = (double) REJECTED.sum() / checked;
+        }
+        return rate;
+    }
+
+    /**
+     * Resets the counters behind {@link #hitRate()}.
+     */
+    public static void resetCounters() {
+        CHECKED.reset();
+        REJECTED.reset();
+    }
+
+}
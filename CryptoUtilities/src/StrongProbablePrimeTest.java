@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumber2;
+
+/**
+ * Strong probable-prime (Miller-Rabin) test for a fixed odd n > 3, built on a
+ * {@code MontgomeryContext} for n. The decomposition n - 1 = d * 2^s is done
+ * once, so each base costs one exponentiation by d plus at most s - 1
+ * squarings, stopping as soon as the outcome is known.
+ *
+ * <p>
+ * Like the context it wraps, a tester keeps scratch buffers and must not be
+ * shared between threads.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class StrongProbablePrimeTest {
+
+    /**
+     * Arithmetic mod n.
+     */
+    private final MontgomeryContext context;
+
+    /**
+     * Odd part d of n - 1.
+     */
+    private final int[] oddPart;
+
+    /**
+     * Exponent s of the largest power of 2 dividing n - 1.
+     */
+    private final int twos;
+
+    /**
+     * n - 1 in Montgomery form.
+     */
+    private final int[] minusOne;
+
+    /**
+     * Scratch residue.
+     */
+    private final int[] x;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            arithmetic mod n
+     * @requires [modulus of context] > 3
+     */
+    StrongProbablePrimeTest(MontgomeryContext context) {
+        this.context = context;
+        int[] nMinusOne = context.modulusLimbs().clone();
+        nMinusOne[0] &= ~1;
+        this.twos = NaturalNumberLimbs.lowestSetBit(nMinusOne);
+        this.oddPart = NaturalNumberLimbs.shiftRight(nMinusOne, this.twos);
+        this.minusOne = new int[context.size()];
+        context.toMontgomery(nMinusOne, this.minusOne);
+        this.x = new int[context.size()];
+    }
+
+    /**
+     * Private copy constructor that shares the decomposition of n - 1 with
+     * another tester but works in its own copy of the context.
+     *
+     * @param source
+     *            tester to copy
+     */
+    private StrongProbablePrimeTest(StrongProbablePrimeTest source) {
+        this.context = source.context.copy();
+        this.oddPart = source.oddPart;
+        this.twos = source.twos;
+        this.minusOne = source.minusOne;
+        this.x = new int[this.context.size()];
+    }
+
+    /**
+     * Returns a tester for the same n with its own scratch buffers, suitable
+     * for use on another thread.
+     *
+     * @return a copy of this tester
+     */
+    StrongProbablePrimeTest copy() {
+        return new StrongProbablePrimeTest(this);
+    }
+
+    /**
+     * Returns the context this tester works in.
+     *
+     * @return arithmetic mod n
+     */
+    MontgomeryContext context() {
+        return this.context;
+    }
+
+    /**
+     * Reports whether a is a strong witness that n is composite.
+     *
+     * @param a
+     *            the base, as limbs padded to the context size
+     * @return true iff a proves n composite
+     * @requires a < n
+     * @ensures <pre>
+     * isWitness = (a mod n /= 0  and  a^d mod n /= 1  and
+     *              for all r: integer where (0 <= r < s)
+     *                (a^(d * 2^r) mod n /= n - 1))
+     * </pre>
+     */
+    boolean isWitness(int[] a) {
+        if (OperationCounters.ENABLED) {
+            OperationCounters.current().witnessRounds++;
+        }
+        boolean witness = !NaturalNumberLimbs.isZero(a);
+        if (witness) {
+            this.context.toMontgomery(a, this.x);
+            this.context.power(this.x, this.oddPart, this.x);
+            if (Arrays.equals(this.x, this.context.one())
+                    || Arrays.equals(this.x, this.minusOne)) {
+                witness = false;
+            }
+            boolean decided = !witness;
+            for (int r = 1; r < this.twos && !decided; r++) {
+                this.context.multiply(this.x, this.x, this.x);
+                if (Arrays.equals(this.x, this.minusOne)) {
+                    witness = false;
+                    decided = true;
+                } else if (Arrays.equals(this.x, this.context.one())) {
+                    /*
+                     * Nontrivial square root of 1 found; no later square can
+                     * reach n - 1
+                     */
+                    decided = true;
+                }
+            }
+        }
+        return witness;
+    }
+
+    /**
+     * Reports whether a is a strong witness that n is composite.
+     *
+     * @param a
+     *            the base
+     * @return true iff a mod n proves n composite
+     */
+    boolean isWitness(NaturalNumber a) {
+        return this.isWitness(this.context.reduce(a));
+    }
+
+    /**
+     * Reports whether a is a strong witness that n is composite.
+     *
+     * @param a
+     *            the base
+     * @return true iff a mod n proves n composite
+     * @requires a >= 0
+     */
+    boolean isWitness(int a) {
+        assert a >= 0 : "Violation of: a >= 0";
+        return this.isWitness(new NaturalNumber2(a));
+    }
+
+}
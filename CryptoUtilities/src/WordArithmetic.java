@@ -0,0 +1,324 @@
+/**
+ * Modular arithmetic and primality on single {@code long} words, for
+ * operands below 2^63. Odd moduli use Montgomery multiplication with R = 2^64,
+ * the high half of each 128-bit product coming from {@link Math#multiplyHigh};
+ * nothing here allocates, so {@code CryptoUtilities} routes every operation
+ * whose operands fit in a word through this class.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class WordArithmetic {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private WordArithmetic() {
+    }
+
+    /**
+     * Number of Newton iterations that lift an inverse mod 2^3 to mod 2^64.
+     */
+    private static final int INVERSE_ITERATIONS = 5;
+
+    /**
+     * Strong-test bases with no strong pseudoprime in common below 2^64
+     * (Sinclair's set).
+     */
+    private static final long[] BASES = { 2, 325, 9375, 28178, 450775,
+        9780504, 1795265022 };
+
+    /**
+     * Small primes tried by division before the strong test.
+     */
+    private static final int[] SMALL_PRIMES = { 2, 3, 5, 7, 11, 13, 17, 19,
+        23, 29, 31, 37, 41, 43, 47, 53 };
+
+    /**
+     * Returns -m^-1 mod 2^64.
+     *
+     * @param m
+     *            the modulus
+     * @return the negated inverse
+     * @requires m is odd
+     */
+    static long negativeInverse(long m) {
+        /*
+         * m is its own inverse mod 2^3; each Newton step doubles the number of
+         * correct low bits
+         */
+        long inverse = m;
+        for (int i = 0; i < INVERSE_ITERATIONS; i++) {
+            inverse *= 2 - m * inverse;
+        }
+        return -inverse;
+    }
+
+    /**
+     * Montgomery product a * b * 2^-64 mod m.
+     *
+     * @param a
+     *            first factor, less than m
+     * @param b
+     *            second factor, less than m
+     * @param m
+     *            the modulus
+     * @param mInverse
+     *            -m^-1 mod 2^64
+     * @return the product
+     * @requires 0 < m < 2^63 and m is odd
+     */
+    static long multiply(long a, long b, long m, long mInverse) {
+        if (OperationCounters.ENABLED) {
+            OperationCounters.current().multiplications++;
+        }
+        long lo = a * b;
+        long hi = Math.multiplyHigh(a, b);
+        /*
+         * Add q*m, which clears the low word, and keep the high word; q may
+         * have its top bit set, so correct the signed high product
+         */
+        long q = lo * mInverse;
+        long qmHigh = Math.multiplyHigh(q, m) + ((q >> (Long.SIZE - 1)) & m);
+        long carry = (lo != 0) ? 1 : 0;
+        long t = hi + qmHigh + carry;
+        if (Long.compareUnsigned(t, m) >= 0) {
+            t -= m;
+        }
+        return t;
+    }
+
+    /**
+     * Returns 2^128 mod m, which takes a residue into Montgomery form through
+     * {@link #multiply}.
+     *
+     * @param m
+     *            the modulus
+     * @return R^2 mod m, where R = 2^64
+     * @requires 1 < m < 2^63
+     */
+    static long rSquared(long m) {
+        long r = Long.remainderUnsigned(-1L, m) + 1;
+        if (r == m) {
+            r = 0;
+        }
+        for (int i = 0; i < Long.SIZE; i++) {
+            r <<= 1;
+            if (r >= m || r < 0) {
+                r -= m;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Returns n^p mod m.
+     *
+     * @param n
+     *            the base
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @return n^p mod m
+     * @requires n >= 0 and p >= 0 and 1 < m < 2^63
+     */
+    static long powerMod(long n, long p, long m) {
+        long result;
+        if ((m & 1) == 1) {
+            long mInverse = negativeInverse(m);
+            long r2 = rSquared(m);
+            long base = multiply(n % m, r2, m, mInverse);
+            long acc = multiply(1, r2, m, mInverse);
+            for (int i = Long.SIZE - 1 - Long.numberOfLeadingZeros(p); i >= 0;
+                    i--) {
+                acc = multiply(acc, acc, m, mInverse);
+                if (((p >>> i) & 1) == 1) {
+                    acc = multiply(acc, base, m, mInverse);
+                }
+            }
+            result = multiply(acc, 1, m, mInverse);
+        } else {
+            result = powerModEven(n % m, p, m);
+        }
+        return result;
+    }
+
+    /**
+     * Returns n^p mod an even m, by square-and-multiply with each product
+     * reduced as a 128-bit value.
+     *
+     * @param n
+     *            the base, less than m
+     * @param p
+     *            the power
+     * @param m
+     *            the modulus
+     * @return n^p mod m
+     * @requires n >= 0 and p >= 0 and 1 < m < 2^63
+     */
+    private static long powerModEven(long n, long p, long m) {
+        long acc = 1 % m;
+        for (int i = Long.SIZE - 1 - Long.numberOfLeadingZeros(p); i >= 0;
+                i--) {
+            acc = multiplyMod(acc, acc, m);
+            if (((p >>> i) & 1) == 1) {
+                acc = multiplyMod(acc, n, m);
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Returns a * b mod m for any m, reducing the 128-bit product one bit at a
+     * time from the top of its high word.
+     *
+     * @param a
+     *            first factor, less than m
+     * @param b
+     *            second factor, less than m
+     * @param m
+     *            the modulus
+     * @return a * b mod m
+     * @requires 0 <= a, b < m < 2^63
+     */
+    private static long multiplyMod(long a, long b, long m) {
+        if (OperationCounters.ENABLED) {
+            OperationCounters.current().multiplications++;
+        }
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        long r;
+        if (hi == 0) {
+            r = Long.remainderUnsigned(lo, m);
+        } else {
+            /*
+             * hi < m, so r = hi is already reduced; shift in the 64 bits of lo
+             */
+            r = hi;
+            for (int i = Long.SIZE - 1; i >= 0; i--) {
+                r = (r << 1) | ((lo >>> i) & 1);
+                if (r >= m || r < 0) {
+                    r -= m;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Returns the greatest common divisor of a and b.
+     *
+     * @param a
+     *            one number
+     * @param b
+     *            the other number
+     * @return gcd(a, b), with gcd(0, 0) = 0
+     * @requires a >= 0 and b >= 0
+     */
+    static long gcd(long a, long b) {
+        long result;
+        if (a == 0) {
+            result = b;
+        } else if (b == 0) {
+            result = a;
+        } else {
+            int common = Long.numberOfTrailingZeros(a | b);
+            long x = a >>> Long.numberOfTrailingZeros(a);
+            long y = b;
+            while (y != 0) {
+                if (OperationCounters.ENABLED) {
+                    OperationCounters.current().gcdSteps++;
+                }
+                y >>>= Long.numberOfTrailingZeros(y);
+                if (x > y) {
+                    long t = x;
+                    x = y;
+                    y = t;
+                }
+                y -= x;
+            }
+            result = x << common;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether n passes the strong test to every base of a set that
+     * decides primality exactly below 2^64.
+     *
+     * @param n
+     *            number to be checked
+     * @return true iff n is prime
+     * @requires 3 < n < 2^63 and n is odd
+     */
+    static boolean isStrongProbablePrime(long n) {
+        long mInverse = negativeInverse(n);
+        long r2 = rSquared(n);
+        long one = multiply(1, r2, n, mInverse);
+        long minusOne = n - one;
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+        boolean isPrime = true;
+        for (int i = 0; i < BASES.length && isPrime; i++) {
+            long a = BASES[i] % n;
+            if (a != 0) {
+                if (OperationCounters.ENABLED) {
+                    OperationCounters.current().witnessRounds++;
+                }
+                /*
+                 * x = a^d in Montgomery form, then square up to s - 1 times
+                 * looking for -1
+                 */
+                long base = multiply(a, r2, n, mInverse);
+                long x = one;
+                for (int b = Long.SIZE - 1 - Long.numberOfLeadingZeros(d);
+                        b >= 0; b--) {
+                    x = multiply(x, x, n, mInverse);
+                    if (((d >>> b) & 1) == 1) {
+                        x = multiply(x, base, n, mInverse);
+                    }
+                }
+                boolean passes = x == one || x == minusOne;
+                for (int j = 1; j < s && !passes && x != one; j++) {
+                    x = multiply(x, x, n, mInverse);
+                    passes = x == minusOne;
+                }
+                isPrime = passes;
+            }
+        }
+        return isPrime;
+    }
+
+    /**
+     * Reports whether n is prime, exactly.
+     *
+     * @param n
+     *            number to be checked
+     * @return true iff n is prime
+     * @requires 1 < n < 2^63
+     */
+    static boolean isPrime(long n) {
+        boolean decided = false;
+        boolean isPrime = true;
+        for (int i = 0; i < SMALL_PRIMES.length && !decided; i++) {
+            int p = SMALL_PRIMES[i];
+            if (n % p == 0) {
+                decided = true;
+                isPrime = n == p;
+                if (OperationCounters.ENABLED && !isPrime) {
+                    OperationCounters.current().prefilterRejections++;
+                }
+            }
+        }
+        if (!decided) {
+            long last = SMALL_PRIMES[SMALL_PRIMES.length - 1];
+            if (n >= last * last) {
+                isPrime = isStrongProbablePrime(n);
+            }
+        }
+        return isPrime;
+    }
+
+}
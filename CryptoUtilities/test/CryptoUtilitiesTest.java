@@ -1,7 +1,22 @@
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import org.junit.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 import components.naturalnumber.NaturalNumber;
 import components.naturalnumber.NaturalNumber2;
 
@@ -11,6 +26,31 @@ import components.naturalnumber.NaturalNumber2;
  */
 public class CryptoUtilitiesTest {
 
+    /*
+     * Tests of randomNumber
+     */
+
+    @Test
+    public void testRandomNumber_InRange() {
+        NaturalNumber n = new NaturalNumber2("1000000000000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("1000000000000000000000");
+        for (int i = 0; i < 100; i++) {
+            NaturalNumber r = CryptoUtilities.randomNumber(n);
+            assertEquals(true, r.compareTo(n) <= 0);
+        }
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testRandomNumber_SeededSourceIsReproducible() {
+        NaturalNumber n = new NaturalNumber2("98765432109876543210");
+        NaturalNumber r1 = CryptoUtilities.randomNumber(n,
+                new SplittableRandom(42));
+        NaturalNumber r2 = CryptoUtilities.randomNumber(n,
+                new SplittableRandom(42));
+        assertEquals(r1, r2);
+    }
+
     /*
      * Tests of reduceToGCD
      */
@@ -37,6 +77,68 @@ public class CryptoUtilitiesTest {
         assertEquals(mExpected, m);
     }
 
+    @Test
+    public void testReduceToGCD_0_5() {
+        NaturalNumber n = new NaturalNumber2(0);
+        NaturalNumber nExpected = new NaturalNumber2(5);
+        NaturalNumber m = new NaturalNumber2(5);
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testReduceToGCD_Large() {
+        NaturalNumber n = new NaturalNumber2("197592489704445150368039231775709"
+                + "681621992434185595816311705623587374986077043660499789546151");
+        NaturalNumber nExpected = new NaturalNumber2(97);
+        NaturalNumber m = new NaturalNumber2("436325033801755366320543755820938"
+                + "945662680907506973295221490140200375478287969512615883687620");
+        NaturalNumber mExpected = new NaturalNumber2(0);
+        CryptoUtilities.reduceToGCD(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+    }
+
+    /*
+     * Tests of inverseMod
+     */
+
+    @Test
+    public void testInverseMod_3_7() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(5);
+        NaturalNumber m = new NaturalNumber2(7);
+        NaturalNumber mExpected = new NaturalNumber2(7);
+        boolean result = CryptoUtilities.inverseMod(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(mExpected, m);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testInverseMod_6_9() {
+        NaturalNumber n = new NaturalNumber2(6);
+        NaturalNumber nExpected = new NaturalNumber2(3);
+        NaturalNumber m = new NaturalNumber2(9);
+        boolean result = CryptoUtilities.inverseMod(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testInverseMod_65537_EvenModulus() {
+        NaturalNumber n = new NaturalNumber2(65537);
+        NaturalNumber nExpected = new NaturalNumber2(
+                "113429186379523348228037317453566814889");
+        NaturalNumber m = new NaturalNumber2(
+                "170141183460469231731687303715884105726");
+        boolean result = CryptoUtilities.inverseMod(n, m);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
     /*
      * Tests of isEven
      */
@@ -59,6 +161,80 @@ public class CryptoUtilitiesTest {
         assertEquals(false, result);
     }
 
+    @Test
+    public void testIsEven_Large() {
+        NaturalNumber n = new NaturalNumber2("123456789012345678901234567890");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "123456789012345678901234567890");
+        boolean result = CryptoUtilities.isEven(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    /*
+     * Tests of isOne and compareToInt
+     */
+
+    @Test
+    public void testValueBelow_Limbs() {
+        final long limit = 1_000_000_000_000_000_000L;
+        assertEquals(0, NaturalNumberLimbs.valueBelow(new int[0], 2));
+        assertEquals(-1, NaturalNumberLimbs.valueBelow(new int[] { 2 }, 2));
+        assertEquals(limit - 1, NaturalNumberLimbs.valueBelow(
+                NaturalNumberLimbs.fromNaturalNumber(
+                        new NaturalNumber2("999999999999999999")),
+                limit));
+        assertEquals(-1, NaturalNumberLimbs.valueBelow(
+                NaturalNumberLimbs.fromNaturalNumber(
+                        new NaturalNumber2("1000000000000000000")),
+                limit));
+        assertEquals(-1, NaturalNumberLimbs.valueBelow(
+                new int[] { 0, Integer.MIN_VALUE, 0 }, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testIsOne_1() {
+        NaturalNumber n = new NaturalNumber2(1);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        boolean result = CryptoUtilities.isOne(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsOne_10() {
+        NaturalNumber n = new NaturalNumber2(10);
+        NaturalNumber nExpected = new NaturalNumber2(10);
+        boolean result = CryptoUtilities.isOne(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testCompareToInt_MaxInt() {
+        NaturalNumber n = new NaturalNumber2(Integer.MAX_VALUE);
+        NaturalNumber nExpected = new NaturalNumber2(Integer.MAX_VALUE);
+        assertEquals(0, CryptoUtilities.compareToInt(n, Integer.MAX_VALUE));
+        assertEquals(true, CryptoUtilities.compareToInt(n, 0) > 0);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testCompareToInt_Large() {
+        NaturalNumber n = new NaturalNumber2("99999999999");
+        NaturalNumber nExpected = new NaturalNumber2("99999999999");
+        int result = CryptoUtilities.compareToInt(n, Integer.MAX_VALUE);
+        assertEquals(nExpected, n);
+        assertEquals(true, result > 0);
+    }
+
+    @Test
+    public void testCompareToInt_0_3() {
+        NaturalNumber n = new NaturalNumber2(0);
+        int result = CryptoUtilities.compareToInt(n, 3);
+        assertEquals(true, result < 0);
+    }
+
     /*
      * Tests of powerMod
      */
@@ -91,4 +267,773 @@ public class CryptoUtilitiesTest {
         assertEquals(mExpected, m);
     }
 
+    @Test
+    public void testPowerMod_4_13_497() {
+        NaturalNumber n = new NaturalNumber2(4);
+        NaturalNumber nExpected = new NaturalNumber2(445);
+        NaturalNumber p = new NaturalNumber2(13);
+        NaturalNumber pExpected = new NaturalNumber2(13);
+        NaturalNumber m = new NaturalNumber2(497);
+        NaturalNumber mExpected = new NaturalNumber2(497);
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_3_200_1000() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2(200);
+        NaturalNumber pExpected = new NaturalNumber2(200);
+        NaturalNumber m = new NaturalNumber2(1000);
+        NaturalNumber mExpected = new NaturalNumber2(1000);
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+        assertEquals(pExpected, p);
+        assertEquals(mExpected, m);
+    }
+
+    @Test
+    public void testPowerMod_Mersenne127() {
+        /*
+         * 2^127 - 1 is prime, so by Fermat 3^(m-1) mod m = 1
+         */
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber nExpected = new NaturalNumber2(1);
+        NaturalNumber p = new NaturalNumber2(
+                "170141183460469231731687303715884105726");
+        NaturalNumber m = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(nExpected, n);
+    }
+
+    /*
+     * Tests of MontgomeryContext
+     */
+
+    @Test
+    public void testMontgomeryContext_Reuse() {
+        MontgomeryContext context = new MontgomeryContext(
+                new NaturalNumber2(497));
+        NaturalNumber n1 = new NaturalNumber2(4);
+        context.powerMod(n1, new NaturalNumber2(13));
+        NaturalNumber n2 = new NaturalNumber2(1000);
+        context.powerMod(n2, new NaturalNumber2(0));
+        NaturalNumber n3 = new NaturalNumber2(501);
+        context.powerMod(n3, new NaturalNumber2(13));
+        assertEquals(new NaturalNumber2(445), n1);
+        assertEquals(new NaturalNumber2(1), n2);
+        assertEquals(new NaturalNumber2(445), n3);
+        assertEquals(new NaturalNumber2(497), context.modulus());
+    }
+
+    /*
+     * Tests of isPrime2
+     */
+
+    @Test
+    public void testIsPrime2_StrongPseudoprime3215031751() {
+        /*
+         * 3215031751 = 151 * 751 * 28351 passes the strong test for bases 2,
+         * 3, 5 and 7
+         */
+        NaturalNumber n = new NaturalNumber2("3215031751");
+        NaturalNumber nExpected = new NaturalNumber2("3215031751");
+        boolean result = CryptoUtilities.isPrime2(n);
+        assertEquals(nExpected, n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testIsPrime2_Mersenne61() {
+        NaturalNumber n = new NaturalNumber2("2305843009213693951");
+        boolean result = CryptoUtilities.isPrime2(n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsPrime2_Mersenne127() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        boolean result = CryptoUtilities.isPrime2(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsPrime2_Carmichael561() {
+        NaturalNumber n = new NaturalNumber2(561);
+        boolean result = CryptoUtilities.isPrime2(n);
+        assertEquals(false, result);
+    }
+
+    /*
+     * Tests of SmallPrimePrefilter
+     */
+
+    @Test
+    public void testHasSmallFactor_SmallPrimeItself() {
+        NaturalNumber n = new NaturalNumber2(17881);
+        boolean result = SmallPrimePrefilter.hasSmallFactor(n);
+        assertEquals(false, result);
+    }
+
+    @Test
+    public void testHasSmallFactor_ProductOfLargeTablePrimes() {
+        /*
+         * 17863 * 17881, the two largest primes in the table
+         */
+        NaturalNumber n = new NaturalNumber2("319408303");
+        NaturalNumber nExpected = new NaturalNumber2("319408303");
+        boolean result = SmallPrimePrefilter.hasSmallFactor(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testHasSmallFactor_CountsRejections() {
+        SmallPrimePrefilter.resetCounters();
+        SmallPrimePrefilter.hasSmallFactor(new NaturalNumber2(15));
+        SmallPrimePrefilter.hasSmallFactor(new NaturalNumber2(17));
+        assertEquals(2, SmallPrimePrefilter.candidatesChecked());
+        assertEquals(1, SmallPrimePrefilter.candidatesRejected());
+    }
+
+    /*
+     * Tests of generateNextLikelyPrime
+     */
+
+    @Test
+    public void testGenerateNextLikelyPrime_17880() {
+        NaturalNumber n = new NaturalNumber2(17880);
+        NaturalNumber nExpected = new NaturalNumber2(17881);
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    @Test
+    public void testGenerateNextLikelyPrime_TenToTheTwelfth() {
+        NaturalNumber n = new NaturalNumber2("1000000000000");
+        NaturalNumber nExpected = new NaturalNumber2("1000000000039");
+        CryptoUtilities.generateNextLikelyPrime(n);
+        assertEquals(nExpected, n);
+    }
+
+    /*
+     * Tests of isPrime2Parallel
+     */
+
+    @Test
+    public void testIsPrime2Parallel_Mersenne127() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber nExpected = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        boolean result = CryptoUtilities.isPrime2Parallel(n);
+        assertEquals(nExpected, n);
+        assertEquals(true, result);
+    }
+
+    @Test
+    public void testIsPrime2Parallel_FermatNumber7() {
+        /*
+         * 2^128 + 1 = 59649589127497217 * 5704689200685129054721
+         */
+        NaturalNumber n = new NaturalNumber2(
+                "340282366920938463463374607431768211457");
+        boolean result = CryptoUtilities.isPrime2Parallel(n);
+        assertEquals(false, result);
+    }
+
+    /*
+     * Tests of isPrime2Batch
+     */
+
+    @Test
+    public void testIsPrime2Batch_List() {
+        List<NaturalNumber> candidates = new ArrayList<>();
+        candidates.add(new NaturalNumber2(2));
+        candidates.add(new NaturalNumber2(561));
+        candidates.add(new NaturalNumber2("3215031751"));
+        candidates.add(new NaturalNumber2(
+                "170141183460469231731687303715884105727"));
+        candidates.add(new NaturalNumber2(
+                "340282366920938463463374607431768211457"));
+        boolean[] verdicts = CryptoUtilities.isPrime2Batch(candidates);
+        assertEquals(5, verdicts.length);
+        assertEquals(true, verdicts[0]);
+        assertEquals(false, verdicts[1]);
+        assertEquals(false, verdicts[2]);
+        assertEquals(true, verdicts[3]);
+        assertEquals(false, verdicts[4]);
+        assertEquals(new NaturalNumber2(561), candidates.get(1));
+    }
+
+    @Test
+    public void testIsPrime2Batch_SharedCandidate() {
+        NaturalNumber mersenne = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        List<NaturalNumber> candidates = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            candidates.add(mersenne);
+        }
+        boolean[] verdicts = CryptoUtilities.isPrime2Batch(candidates);
+        for (boolean verdict : verdicts) {
+            assertEquals(true, verdict);
+        }
+        assertEquals(new NaturalNumber2(
+                "170141183460469231731687303715884105727"), mersenne);
+    }
+
+    @Test
+    public void testIsPrime2Batch_Stream() {
+        List<Boolean> verdicts = CryptoUtilities
+                .isPrime2Batch(IntStream.rangeClosed(2, 30)
+                        .mapToObj(i -> (NaturalNumber) new NaturalNumber2(i)))
+                .collect(Collectors.toList());
+        List<Boolean> expected = new ArrayList<>();
+        for (int i = 2; i <= 30; i++) {
+            boolean prime = true;
+            for (int d = 2; d < i; d++) {
+                prime = prime && i % d != 0;
+            }
+            expected.add(prime);
+        }
+        assertEquals(expected, verdicts);
+    }
+
+    /*
+     * Tests of RsaKeyGenerator
+     */
+
+    /**
+     * Checks that pair is a consistent RSA key pair with a modulus of the
+     * given bit length.
+     *
+     * @param pair
+     *            the key pair
+     * @param bits
+     *            expected bit length of the modulus
+     */
+    private static void assertValidKeyPair(RsaKeyPair pair, int bits) {
+        NaturalNumber p = pair.p();
+        NaturalNumber q = pair.q();
+        NaturalNumber n = new NaturalNumber2(p);
+        n.multiply(q);
+        assertEquals(n, pair.modulus());
+        assertEquals(bits, NaturalNumberLimbs
+                .bitLength(NaturalNumberLimbs.fromNaturalNumber(n)));
+        assertEquals(true, CryptoUtilities.isPrime2(p));
+        assertEquals(true, CryptoUtilities.isPrime2(q));
+        NaturalNumber pMinusOne = new NaturalNumber2(p);
+        pMinusOne.decrement();
+        NaturalNumber qMinusOne = new NaturalNumber2(q);
+        qMinusOne.decrement();
+        NaturalNumber ed = pair.publicExponent();
+        ed.multiply(pair.privateExponent());
+        NaturalNumber phi = new NaturalNumber2(pMinusOne);
+        phi.multiply(qMinusOne);
+        assertEquals(true, CryptoUtilities.isOne(ed.divide(phi)));
+        NaturalNumber d = pair.privateExponent();
+        assertEquals(pair.dP(), d.divide(pMinusOne));
+        d = pair.privateExponent();
+        assertEquals(pair.dQ(), d.divide(qMinusOne));
+        NaturalNumber qInvQ = pair.qInv();
+        qInvQ.multiply(q);
+        assertEquals(true, CryptoUtilities.isOne(qInvQ.divide(p)));
+        NaturalNumber m = new NaturalNumber2(123456789);
+        pair.publicOperation(m);
+        CryptoUtilities.powerMod(m, pair.privateExponent(), pair.modulus());
+        assertEquals(new NaturalNumber2(123456789), m);
+        pair.publicOperation(m);
+        pair.privateOperation(m);
+        assertEquals(new NaturalNumber2(123456789), m);
+    }
+
+    @Test
+    public void testRsaKeyGenerator_Generate() {
+        assertValidKeyPair(RsaKeyGenerator.generate(256), 256);
+        assertValidKeyPair(RsaKeyGenerator.generate(97), 97);
+    }
+
+    @Test
+    public void testRsaKeyGenerator_IgnoresSeededSource() {
+        RsaKeyPair first;
+        RsaKeyPair second;
+        try {
+            CryptoUtilities.setRandomSource(new Random(7));
+            first = RsaKeyGenerator.generate(128);
+            CryptoUtilities.setRandomSource(new Random(7));
+            second = RsaKeyGenerator.generate(128);
+        } finally {
+            CryptoUtilities.setRandomSource(null);
+        }
+        assertEquals(false, first.modulus().equals(second.modulus()));
+    }
+
+    @Test
+    public void testRsaKeyGenerator_Pipeline() throws InterruptedException {
+        try (RsaKeyGenerator generator = new RsaKeyGenerator(129, 3, 2)) {
+            generator.start();
+            assertValidKeyPair(generator.take(), 129);
+            List<RsaKeyPair> pairs = generator.stream().limit(3)
+                    .collect(Collectors.toList());
+            for (RsaKeyPair pair : pairs) {
+                assertValidKeyPair(pair, 129);
+            }
+            assertEquals(true, generator.keysGenerated() >= 4);
+            assertEquals(true, generator.keysPerSecond() > 0);
+        }
+    }
+
+    /*
+     * Tests of powerModCrt
+     */
+
+    @Test
+    public void testPowerModCrt_Textbook() {
+        /*
+         * p = 61, q = 53, e = 17, d = 2753: dP = 53, dQ = 49, qInv = 38
+         */
+        NaturalNumber n = new NaturalNumber2(2790);
+        NaturalNumber p = new NaturalNumber2(61);
+        NaturalNumber q = new NaturalNumber2(53);
+        NaturalNumber dP = new NaturalNumber2(53);
+        NaturalNumber dQ = new NaturalNumber2(49);
+        NaturalNumber qInv = new NaturalNumber2(38);
+        CryptoUtilities.powerModCrt(n, p, q, dP, dQ, qInv);
+        assertEquals(new NaturalNumber2(65), n);
+        assertEquals(new NaturalNumber2(61), p);
+        assertEquals(new NaturalNumber2(53), q);
+        assertEquals(new NaturalNumber2(53), dP);
+        assertEquals(new NaturalNumber2(49), dQ);
+        assertEquals(new NaturalNumber2(38), qInv);
+    }
+
+    @Test
+    public void testPowerModCrt_MatchesPowerMod() {
+        RsaKeyPair pair = RsaKeyGenerator.generate(1100);
+        SplittableRandom random = new SplittableRandom(12);
+        NaturalNumber bound = pair.modulus();
+        bound.decrement();
+        for (int i = 0; i < 3; i++) {
+            NaturalNumber c = CryptoUtilities.randomNumber(bound, random);
+            NaturalNumber expected = new NaturalNumber2(c);
+            CryptoUtilities.powerMod(expected, pair.privateExponent(),
+                    pair.modulus());
+            CryptoUtilities.powerModCrt(c, pair.p(), pair.q(), pair.dP(),
+                    pair.dQ(), pair.qInv());
+            assertEquals(expected, c);
+        }
+    }
+
+    /*
+     * Tests of powerModFixedBase and FixedBaseCache
+     */
+
+    @Test
+    public void testPowerModFixedBase_MatchesPowerMod() {
+        NaturalNumber m = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        NaturalNumber bound = new NaturalNumber2(m);
+        bound.multiply(m);
+        SplittableRandom random = new SplittableRandom(13);
+        for (int i = 0; i < 20; i++) {
+            NaturalNumber p = CryptoUtilities.randomNumber(bound, random);
+            if (i == 0) {
+                p.clear();
+            }
+            NaturalNumber n = new NaturalNumber2(2);
+            NaturalNumber expected = new NaturalNumber2(2);
+            CryptoUtilities.powerMod(expected, p, m);
+            CryptoUtilities.powerModFixedBase(n, p, m);
+            assertEquals(expected, n);
+        }
+    }
+
+    @Test
+    public void testPowerModFixedBase_EvenModulus() {
+        NaturalNumber n = new NaturalNumber2(3);
+        NaturalNumber p = new NaturalNumber2(5);
+        NaturalNumber m = new NaturalNumber2(100);
+        CryptoUtilities.powerModFixedBase(n, p, m);
+        assertEquals(new NaturalNumber2(43), n);
+    }
+
+    @Test
+    public void testFixedBaseCache_HitsAndEviction() {
+        NaturalNumber m1 = new NaturalNumber2("1000000000000000000117");
+        NaturalNumber m2 = new NaturalNumber2("1000000000000000000143");
+        FixedBaseCache cache = new FixedBaseCache(400);
+        NaturalNumber n = new NaturalNumber2(5);
+        cache.powerMod(n, new NaturalNumber2(12345), m1);
+        NaturalNumber expected = new NaturalNumber2(5);
+        CryptoUtilities.powerMod(expected, new NaturalNumber2(12345), m1);
+        assertEquals(expected, n);
+        n = new NaturalNumber2(5);
+        cache.powerMod(n, new NaturalNumber2(999), m1);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        n = new NaturalNumber2(5);
+        cache.powerMod(n, new NaturalNumber2(999), m2);
+        expected = new NaturalNumber2(5);
+        CryptoUtilities.powerMod(expected, new NaturalNumber2(999), m2);
+        assertEquals(expected, n);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.evictions());
+        assertEquals(true, cache.bytes() <= 400);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    /*
+     * Tests of Factorizer
+     */
+
+    @Test
+    public void testFactorizer_TrialDivision() {
+        Factorizer factorizer = new Factorizer();
+        List<NaturalNumber> factors = factorizer
+                .factor(new NaturalNumber2(600));
+        List<NaturalNumber> expected = new ArrayList<>();
+        for (int p : new int[] { 2, 2, 2, 3, 5, 5 }) {
+            expected.add(new NaturalNumber2(p));
+        }
+        assertEquals(expected, factors);
+        assertEquals(0, factorizer.rhoIterations());
+    }
+
+    @Test
+    public void testFactorizer_Prime() {
+        Factorizer factorizer = new Factorizer();
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        assertEquals(null, factorizer.findFactor(n));
+        assertEquals(new NaturalNumber2(
+                "170141183460469231731687303715884105727"), n);
+    }
+
+    @Test
+    public void testFactorizer_Rho() {
+        /*
+         * 2^64 + 1 = 274177 * 67280421310721
+         */
+        Factorizer factorizer = new Factorizer();
+        List<NaturalNumber> factors = factorizer
+                .factor(new NaturalNumber2("18446744073709551617"));
+        List<NaturalNumber> expected = new ArrayList<>();
+        expected.add(new NaturalNumber2(274177));
+        expected.add(new NaturalNumber2("67280421310721"));
+        assertEquals(expected, factors);
+        assertEquals(1, factorizer.rhoFactors());
+        assertEquals(true, factorizer.rhoIterations() > 0);
+    }
+
+    @Test
+    public void testFactorizer_Ecm() {
+        /*
+         * 2^128 + 1 = 59649589127497217 * 5704689200685129054721; rho
+         * needs about 2^28 iterations for the smaller factor, beyond its
+         * limit unless the pool is very wide
+         */
+        Factorizer factorizer = new Factorizer();
+        List<NaturalNumber> factors = factorizer.factor(new NaturalNumber2(
+                "340282366920938463463374607431768211457"));
+        List<NaturalNumber> expected = new ArrayList<>();
+        expected.add(new NaturalNumber2("59649589127497217"));
+        expected.add(new NaturalNumber2("5704689200685129054721"));
+        assertEquals(expected, factors);
+        assertEquals(1, factorizer.rhoFactors() + factorizer.ecmFactors());
+    }
+
+    /*
+     * Tests of the single-word fast path
+     */
+
+    @Test
+    public void testIsPrime2_WordStrongPseudoprime() {
+        /*
+         * Strong pseudoprime to every prime base up to 23
+         */
+        NaturalNumber n = new NaturalNumber2("3825123056546413051");
+        assertEquals(false, CryptoUtilities.isPrime2(n));
+        assertEquals(new NaturalNumber2("3825123056546413051"), n);
+        assertEquals(true, CryptoUtilities
+                .isPrime2(new NaturalNumber2("999999999999999989")));
+    }
+
+    @Test
+    public void testPowerMod_WordEvenModulus() {
+        NaturalNumber n = new NaturalNumber2("123456789012345678");
+        NaturalNumber p = new NaturalNumber2("987654321098765432");
+        NaturalNumber m = new NaturalNumber2("999999999999999998");
+        NaturalNumber expected = new NaturalNumber2(n);
+        NaturalNumber bigM = new NaturalNumber2(m);
+        bigM.multiply(new NaturalNumber2("1000000000000000000000"));
+        /*
+         * Cross-check against the multi-limb engine: n^p mod (k * m), reduced
+         * mod m, is n^p mod m
+         */
+        CryptoUtilities.powerMod(expected, p, bigM);
+        NaturalNumber expectedModM = expected.divide(m);
+        CryptoUtilities.powerMod(n, p, m);
+        assertEquals(expectedModM, n);
+        assertEquals(new NaturalNumber2("987654321098765432"), p);
+        assertEquals(new NaturalNumber2("999999999999999998"), m);
+    }
+
+    @Test
+    public void testReduceToGCD_Word() {
+        NaturalNumber n = new NaturalNumber2("600000000000000000");
+        NaturalNumber m = new NaturalNumber2("450000000000000000");
+        CryptoUtilities.reduceToGCD(n, m);
+        assertEquals(new NaturalNumber2("150000000000000000"), n);
+        assertEquals(new NaturalNumber2(0), m);
+    }
+
+    /*
+     * Tests of isPrime2 in Baillie-PSW mode
+     */
+
+    @Test
+    public void testIsPrime2BailliePsw_MersennePrime() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        assertEquals(true,
+                CryptoUtilities.isPrime2(n, PrimalityMode.BAILLIE_PSW));
+        assertEquals(new NaturalNumber2(
+                "170141183460469231731687303715884105727"), n);
+    }
+
+    @Test
+    public void testIsPrime2BailliePsw_Composites() {
+        /*
+         * A strong pseudoprime to all prime bases up to 37, and 2^128 + 1
+         */
+        assertEquals(false, CryptoUtilities.isPrime2(
+                new NaturalNumber2("318665857834031151167461"),
+                PrimalityMode.BAILLIE_PSW));
+        assertEquals(false, CryptoUtilities.isPrime2(
+                new NaturalNumber2("340282366920938463463374607431768211457"),
+                PrimalityMode.BAILLIE_PSW));
+    }
+
+    @Test
+    public void testBailliePsw_StrongPseudoprimeSquare() {
+        /*
+         * 1093^2 is a strong pseudoprime to base 2, and no D has (D/n) = -1
+         */
+        NaturalNumber n = new NaturalNumber2(1194649);
+        BailliePswTest test = new BailliePswTest(
+                new StrongProbablePrimeTest(new MontgomeryContext(n)), n);
+        assertEquals(false, test.isProbablePrime());
+    }
+
+    @Test
+    public void testBailliePsw_SmallPrimes() {
+        for (int p : new int[] { 5, 7, 11, 13, 61, 5461, 65537 }) {
+            NaturalNumber n = new NaturalNumber2(p);
+            BailliePswTest test = new BailliePswTest(
+                    new StrongProbablePrimeTest(new MontgomeryContext(n)), n);
+            assertEquals(p != 5461, test.isProbablePrime());
+        }
+    }
+
+    /*
+     * Tests of operation counters and JFR events
+     */
+
+    @Test
+    public void testOperationCounters_IsPrime2() {
+        NaturalNumber n = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        OperationCounters start = OperationCounters.snapshot();
+        assertEquals(true, CryptoUtilities.isPrime2(n));
+        OperationCounters counts = OperationCounters.snapshot().since(start);
+        if (OperationCounters.isEnabled()) {
+            assertEquals(50, counts.witnessRounds());
+            assertEquals(true, counts.multiplications() > 0);
+        } else {
+            assertEquals(0, counts.witnessRounds());
+            assertEquals(0, counts.multiplications());
+            assertEquals(true, start == counts);
+        }
+        assertEquals(0, counts.prefilterRejections());
+    }
+
+    @Test
+    public void testEvents_RecordedWhenEnabled() throws IOException {
+        Path file = Files.createTempFile("crypto", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("CryptoUtilities.IsPrime2");
+            recording.enable("CryptoUtilities.GenerateNextLikelyPrime");
+            recording.start();
+            CryptoUtilities.isPrime2(new NaturalNumber2(
+                    "170141183460469231731687303715884105727"));
+            NaturalNumber n = new NaturalNumber2("1000000000000000000000");
+            CryptoUtilities.generateNextLikelyPrime(n);
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertEquals(2, events.size());
+        RecordedEvent check = events.get(0);
+        assertEquals("CryptoUtilities.IsPrime2",
+                check.getEventType().getName());
+        assertEquals(127, check.getInt("operandBits"));
+        assertEquals(true, check.getBoolean("prime"));
+        RecordedEvent search = events.get(1);
+        assertEquals(70, search.getInt("operandBits"));
+        assertEquals(true, search.getLong("candidatesTested") >= 1);
+    }
+
+    /*
+     * Tests of the prime cache
+     */
+
+    @Test
+    public void testPrimeCache_PersistsAcrossOpen() throws IOException {
+        Path file = Files.createTempFile("primes", ".cache");
+        NaturalNumber seed = new NaturalNumber2("1000000000000000000000");
+        NaturalNumber p = new NaturalNumber2(seed);
+        try (PrimeCache cache = new PrimeCache(file, 4096)) {
+            CryptoUtilities.setPrimeCache(cache);
+            CryptoUtilities.generateNextLikelyPrime(p);
+            CryptoUtilities.setPrimeCache(null);
+            assertEquals(1, cache.size());
+        }
+        NaturalNumber inside = new NaturalNumber2(seed);
+        inside.increment();
+        try (PrimeCache cache = new PrimeCache(file, 4096)) {
+            assertEquals(p, cache.nextLikelyPrime(inside));
+            assertEquals(Boolean.TRUE, cache.isPrime(p));
+            assertEquals(Boolean.FALSE, cache.isPrime(seed));
+            p.increment();
+            assertEquals(null, cache.isPrime(p));
+            assertEquals(3, cache.hits());
+            assertEquals(1, cache.misses());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testPrimeCache_RefusesOtherFile() throws IOException {
+        Path file = Files.createTempFile("notes", ".txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append("line ").append(i).append(" of some other file\n");
+        }
+        Files.write(file, text.toString().getBytes());
+        byte[] before = Files.readAllBytes(file);
+        boolean refused = false;
+        try (PrimeCache cache = new PrimeCache(file, 1024)) {
+            cache.size();
+        } catch (IOException e) {
+            refused = true;
+        }
+        assertEquals(true, refused);
+        assertArrayEquals(before, Files.readAllBytes(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testPrimeCache_ConsultedFirst() throws IOException {
+        Path file = Files.createTempFile("primes", ".cache");
+        NaturalNumber mersenne = new NaturalNumber2(
+                "170141183460469231731687303715884105727");
+        try (PrimeCache cache = new PrimeCache(file, 4096)) {
+            CryptoUtilities.setPrimeCache(cache);
+            NaturalNumber n = new NaturalNumber2("1000000000000000000000");
+            CryptoUtilities.generateNextLikelyPrime(n);
+            NaturalNumber again = new NaturalNumber2("1000000000000000000001");
+            CryptoUtilities.generateNextLikelyPrime(again);
+            assertEquals(n, again);
+            assertEquals(true, CryptoUtilities.isPrime2(mersenne));
+            assertEquals(true, CryptoUtilities.isPrime2(mersenne,
+                    PrimalityMode.BAILLIE_PSW));
+            /*
+             * Word-sized numbers are not cached
+             */
+            assertEquals(true,
+                    CryptoUtilities.isPrime2(new NaturalNumber2(97)));
+            CryptoUtilities.setPrimeCache(null);
+            assertEquals(2, cache.hits());
+            assertEquals(2, cache.misses());
+            assertEquals(2, cache.size());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testPrimeCache_BypassedByKeyGeneration() throws IOException {
+        Path file = Files.createTempFile("primes", ".cache");
+        RsaKeyPair pair;
+        try (PrimeCache cache = new PrimeCache(file, 4096)) {
+            CryptoUtilities.setPrimeCache(cache);
+            CryptoUtilities.setRandomSource(() -> {
+                throw new IllegalStateException("global source used");
+            });
+            try {
+                pair = RsaKeyGenerator.generate(256);
+            } finally {
+                CryptoUtilities.setRandomSource(null);
+                CryptoUtilities.setPrimeCache(null);
+            }
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.misses());
+        }
+        Files.delete(file);
+        assertValidKeyPair(pair, 256);
+    }
+
+    @Test
+    public void testPrimeCache_CompactionEvictsOldest() throws IOException {
+        Path file = Files.createTempFile("primes", ".cache");
+        final int count = 100;
+        try (PrimeCache cache = new PrimeCache(file, 1024)) {
+            NaturalNumber c = new NaturalNumber2("1000000000000000000000");
+            NaturalNumber first = new NaturalNumber2(c);
+            for (int i = 0; i < count; i++) {
+                cache.addComposite(c);
+                c.add(new NaturalNumber2(2));
+            }
+            assertEquals(true, cache.compactions() > 0);
+            assertEquals(true, cache.bytesUsed() <= cache.capacity());
+            assertEquals(true, cache.size() < count);
+            assertEquals(null, cache.isPrime(first));
+            c.subtract(new NaturalNumber2(2));
+            assertEquals(Boolean.FALSE, cache.isPrime(c));
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testPrimeCache_CompactionDropsRedundant() throws IOException {
+        Path file = Files.createTempFile("primes", ".cache");
+        try (PrimeCache cache = new PrimeCache(file, 4096)) {
+            NaturalNumber seed = new NaturalNumber2("1000000000000000000000");
+            NaturalNumber p = new NaturalNumber2("1000000000000000000117");
+            cache.addComposite(seed);
+            cache.addComposite(new NaturalNumber2("1000000000000000000001"));
+            cache.addPrime(p);
+            cache.addRange(new NaturalNumber2("1000000000000000000100"), p);
+            cache.addRange(seed, p);
+            assertEquals(4, cache.size());
+            long before = cache.bytesUsed();
+            cache.compact();
+            assertEquals(1, cache.size());
+            assertEquals(true, cache.bytesUsed() < before);
+            assertEquals(p, cache.nextLikelyPrime(seed));
+        }
+        Files.delete(file);
+    }
+
 }
\ No newline at end of file
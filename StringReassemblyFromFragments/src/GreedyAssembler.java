@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Greedy assembly that does not rescan every pair after each merge.
+ *
+ * <p>
+ * While no string present is a substring of another (which greedy merging
+ * preserves), a merged string behaves at its ends exactly like the original
+ * fragments there: its overlap with a prefix of another string is less than
+ * the length of its last original fragment, and likewise at the front. So the
+ * overlap out of a merged string is the overlap out of its last original
+ * fragment, the overlap into it is the overlap into its first original
+ * fragment, and, since no original fragment is a prefix of another, comparing
+ * two strings present is comparing their first original fragments. Every
+ * candidate merge can thus be read off an {@link OverlapIndex} over the
+ * original fragments, in which the partners are the first fragments of the
+ * strings present.
+ *
+ * <p>
+ * Candidate merges wait in a max-heap ordered as
+ * {@code StringReassembly.bestOverlap} chooses (larger overlap, then smaller
+ * first string, then smaller second string), one current entry per string:
+ * the best merge out of its last fragment. Superseded entries are dropped when
+ * they reach the top (lazy deletion), and entries whose partner has since been
+ * merged into the middle of a string are recomputed there. After a merge only
+ * the entry of the new string is computed. The merges are those of the
+ * rescanning loop, in the same order and with the same results.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class GreedyAssembler {
+
+    /**
+     * Marks the absence of a string.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * A candidate merge.
+     */
+    private final class Candidate implements Comparable<Candidate> {
+
+        /**
+         * Overlap of a suffix of the first string with a prefix of the second.
+         */
+        private final int overlap;
+
+        /**
+         * Last original fragment of the string whose suffix overlaps.
+         */
+        private final int first;
+
+        /**
+         * First original fragment of the string whose prefix overlaps.
+         */
+        private final int second;
+
+        /**
+         * Rank of the first original fragment of the string whose suffix
+         * overlaps.
+         */
+        private final int firstRank;
+
+        /**
+         * Version of the entry of first.
+         */
+        private final int version;
+
+        /**
+         * Constructor.
+         *
+         * @param overlap
+         *            the overlap
+         * @param first
+         *            last fragment of the string whose suffix overlaps
+         * @param second
+         *            first fragment of the string whose prefix overlaps
+         * @param firstRank
+         *            rank of the first fragment of the string whose suffix
+         *            overlaps
+         * @param version
+         *            version of the entry of first
+         */
+        Candidate(int overlap, int first, int second, int firstRank,
+                int version) {
+            this.overlap = overlap;
+            this.first = first;
+            this.second = second;
+            this.firstRank = firstRank;
+            this.version = version;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int c = Integer.compare(other.overlap, this.overlap);
+            if (c == 0) {
+                c = Integer.compare(this.firstRank, other.firstRank);
+            }
+            if (c == 0) {
+                c = Integer.compare(
+                        GreedyAssembler.this.index.rank(this.second),
+                        GreedyAssembler.this.index.rank(other.second));
+            }
+            return c;
+        }
+
+    }
+
+    /**
+     * Index over the original fragments.
+     */
+    private final OverlapIndex index;
+
+    /**
+     * Every string, original fragments first, then one per merge; null once
+     * merged into another. Merged strings are ropes, so a merge copies no
+     * characters.
+     */
+    private final List<Rope> strings = new ArrayList<>();
+
+    /**
+     * First original fragment of each string.
+     */
+    private final List<Integer> head = new ArrayList<>();
+
+    /**
+     * Last original fragment of each string.
+     */
+    private final List<Integer> tail = new ArrayList<>();
+
+    /**
+     * String each original fragment begins, if it is a partner.
+     */
+    private final int[] begins;
+
+    /**
+     * String each original fragment ends, or NONE.
+     */
+    private final int[] ends;
+
+    /**
+     * Version of the current entry of each original fragment.
+     */
+    private final int[] version;
+
+    /**
+     * Candidate merges.
+     */
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>();
+
+    /**
+     * Constructor.
+     *
+     * @param fragments
+     *            the fragments
+     * @requires <pre>
+     * [no two entries of fragments are equal]  and
+     * [no entry of fragments is a substring of another]
+     * </pre>
+     */
+    GreedyAssembler(String[] fragments) {
+        assert fragments != null : "Violation of: fragments is not null";
+        this.index = new OverlapIndex(fragments);
+        this.begins = new int[fragments.length];
+        this.ends = new int[fragments.length];
+        this.version = new int[fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            this.strings.add(Rope.of(fragments[i]));
+            this.head.add(i);
+            this.tail.add(i);
+            this.begins[i] = i;
+            this.ends[i] = i;
+            this.offer(i);
+        }
+    }
+
+    /**
+     * Computes the best merge out of the string that original fragment i
+     * ends, and makes it the current entry of i.
+     *
+     * @param i
+     *            last original fragment of a string present
+     */
+    private void offer(int i) {
+        int first = this.head.get(this.ends[i]);
+        this.index.update(i, first);
+        this.version[i]++;
+        int overlap = this.index.bestOverlap(i);
+        if (overlap > 0) {
+            this.heap.add(new Candidate(overlap, i, this.index.bestPartner(i),
+                    this.index.rank(first), this.version[i]));
+        }
+    }
+
+    /**
+     * Merges the two strings of c into a new one and computes its entry.
+     *
+     * @param c
+     *            the candidate, current and with its partner present
+     */
+    private void merge(Candidate c) {
+        int x = this.ends[c.first];
+        int y = this.begins[c.second];
+        int z = this.strings.size();
+        this.strings.add(StringReassembly.combination(this.strings.get(x),
+                this.strings.get(y), c.overlap));
+        this.head.add(this.head.get(x));
+        this.tail.add(this.tail.get(y));
+        this.strings.set(x, null);
+        this.strings.set(y, null);
+        this.ends[c.first] = NONE;
+        this.index.withdraw(c.second);
+        this.begins[this.head.get(z)] = z;
+        this.ends[this.tail.get(z)] = z;
+        this.offer(this.tail.get(z));
+    }
+
+    /**
+     * Merges strings, best candidate first, until no two strings present
+     * overlap.
+     */
+    void run() {
+        while (!this.heap.isEmpty()) {
+            Candidate c = this.heap.remove();
+            if (this.ends[c.first] != NONE
+                    && c.version == this.version[c.first]) {
+                if (this.index.isPartner(c.second)) {
+                    this.merge(c);
+                } else {
+                    /*
+                     * The partner was merged into the middle of a string since
+                     * this entry was computed; find the next best
+                     */
+                    this.offer(c.first);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the strings present, each flattened once from its rope.
+     *
+     * @return the strings not merged into others
+     */
+    List<String> result() {
+        List<String> result = new ArrayList<>();
+        for (Rope str : this.strings) {
+            if (str != null) {
+                result.add(str.toString());
+            }
+        }
+        return result;
+    }
+
+}
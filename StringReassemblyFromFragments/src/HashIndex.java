@@ -0,0 +1,228 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from long keys to non-negative int values, with
+ * linear probing from a multiplicative (Fibonacci) hash, doubled whenever its
+ * load would pass one half; and the polynomial string hash most of its keys
+ * are made of. Shared by the indexes of this program.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class HashIndex {
+
+    /**
+     * Marks the absence of a value, and an empty slot.
+     */
+    static final int NONE = -1;
+
+    /**
+     * Multiplier of the slot hash (2^64 divided by the golden ratio).
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Base of the polynomial string hash (the 64-bit FNV prime).
+     */
+    private static final long STRING_HASH_BASE = 0x100000001B3L;
+
+    /**
+     * Fewest bits of a slot index.
+     */
+    private static final int MIN_BITS = 4;
+
+    /**
+     * Key in each slot.
+     */
+    private long[] keys;
+
+    /**
+     * Value in each slot, or NONE for an empty slot.
+     */
+    private int[] values;
+
+    /**
+     * Bits of a slot index.
+     */
+    private int bits;
+
+    /**
+     * Number of keys in the table.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param expected
+     *            number of keys expected, so that the table need not grow
+     *            until there are more
+     * @requires expected >= 0
+     */
+    HashIndex(int expected) {
+        assert expected >= 0 : "Violation of: expected >= 0";
+        this.bits = Math.max(Integer.SIZE
+                - Integer.numberOfLeadingZeros(2 * expected), MIN_BITS);
+        this.keys = new long[1 << this.bits];
+        this.values = new int[1 << this.bits];
+        Arrays.fill(this.values, NONE);
+    }
+
+    /**
+     * Returns the slot holding key, or the empty slot where it belongs.
+     *
+     * @param key
+     *            the key
+     * @return the slot
+     */
+    private int slot(long key) {
+        int mask = this.keys.length - 1;
+        int slot = (int) ((key * HASH_MULTIPLIER) >>> (Long.SIZE - this.bits));
+        while (this.values[slot] != NONE && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table.
+     */
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.bits++;
+        this.keys = new long[1 << this.bits];
+        this.values = new int[1 << this.bits];
+        Arrays.fill(this.values, NONE);
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldValues[s] != NONE) {
+                int slot = this.slot(oldKeys[s]);
+                this.keys[slot] = oldKeys[s];
+                this.values[slot] = oldValues[s];
+            }
+        }
+    }
+
+    /**
+     * Returns the value of key.
+     *
+     * @param key
+     *            the key
+     * @return the value of key, or NONE if key is not in the table
+     */
+    int get(long key) {
+        return this.values[this.slot(key)];
+    }
+
+    /**
+     * Sets the value of key to value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the previous value of key, or NONE if key was not in the table
+     * @updates this
+     * @requires value >= 0
+     */
+    int put(long key, int value) {
+        assert value >= 0 : "Violation of: value >= 0";
+        if (2 * (this.size + 1) > this.keys.length) {
+            this.grow();
+        }
+        int slot = this.slot(key);
+        int previous = this.values[slot];
+        if (previous == NONE) {
+            this.size++;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * Returns the polynomial hash of a string extended by one more value.
+     *
+     * @param hash
+     *            the hash of the string
+     * @param value
+     *            the value (a character, or a length)
+     * @return the hash of the string followed by value
+     */
+    static long append(long hash, int value) {
+        return hash * STRING_HASH_BASE + value;
+    }
+
+    /**
+     * Returns the polynomial hash of str[from, from + length).
+     *
+     * @param str
+     *            the string
+     * @param from
+     *            start of the substring
+     * @param length
+     *            length of the substring
+     * @return the hash
+     * @requires 0 <= from and from + length <= |str|
+     */
+    static long hash(String str, int from, int length) {
+        long hash = 0;
+        for (int p = from; p < from + length; p++) {
+            hash = append(hash, str.charAt(p));
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the hashes of every prefix of str, from which
+     * {@link #window(long[], int, int, long)} hashes any substring in
+     * constant time.
+     *
+     * @param str
+     *            the string
+     * @return array whose entry p is the hash of str[0, p), 0 <= p <= |str|
+     */
+    static long[] prefixHashes(String str) {
+        long[] prefix = new long[str.length() + 1];
+        for (int p = 0; p < str.length(); p++) {
+            prefix[p + 1] = append(prefix[p], str.charAt(p));
+        }
+        return prefix;
+    }
+
+    /**
+     * Returns the factor a hash is multiplied by when length more values are
+     * appended.
+     *
+     * @param length
+     *            the number of values
+     * @return STRING_HASH_BASE ^ length
+     */
+    static long power(int length) {
+        long power = 1;
+        for (int p = 0; p < length; p++) {
+            power *= STRING_HASH_BASE;
+        }
+        return power;
+    }
+
+    /**
+     * Returns the polynomial hash of str[from, from + length), given the
+     * hashes of the prefixes of str.
+     *
+     * @param prefix
+     *            the hashes of the prefixes of str
+     * @param from
+     *            start of the substring
+     * @param length
+     *            length of the substring
+     * @param power
+     *            power(length)
+     * @return the hash
+     * @requires 0 <= from and from + length < |prefix|
+     */
+    static long window(long[] prefix, int from, int length, long power) {
+        return prefix[from + length] - prefix[from] * power;
+    }
+
+}
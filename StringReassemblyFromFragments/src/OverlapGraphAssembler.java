@@ -0,0 +1,236 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assembly along a best-overlap graph, in time about linear in the total
+ * length of the fragments instead of the greedy loop's repeated searches.
+ *
+ * <p>
+ * For every fragment the longest overlap out of it (suffix of it, prefix of
+ * another) and the longest overlap into it are found through a hash index of
+ * the first minOverlap characters of every fragment: a suffix of the fragment
+ * can only be a prefix of another if its first minOverlap characters are, so
+ * each suffix at least minOverlap long is looked up, longest first, and the
+ * hits are verified with {@link String#regionMatches(int, String, int, int)}.
+ * Keying on the whole shortest overlap, not a shorter k-mer, keeps the
+ * fragments sharing a key down to those sharing their first minOverlap
+ * characters, so a lookup walks few of them unless minOverlap is short next to
+ * the repeats in the fragments. Overlaps into a fragment are overlaps out of
+ * its reverse among the reversed fragments. Ties go to the smaller partner
+ * (in {@link String#compareTo} order), so the graph does not depend on the
+ * order of the fragments.
+ *
+ * <p>
+ * An overlap is kept when it is the best both out of its first fragment and
+ * into its second. Every fragment then has at most one kept overlap each way,
+ * so the kept overlaps form simple paths and cycles (unitigs); each path, and
+ * each cycle cut before its smallest fragment, is spelled out as one contig.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class OverlapGraphAssembler {
+
+    /**
+     * Marks the absence of a fragment.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The fragments.
+     */
+    private final String[] fragments;
+
+    /**
+     * Shortest overlap considered.
+     */
+    private final int minOverlap;
+
+    /**
+     * Position of each fragment in String.compareTo order.
+     */
+    private final int[] rank;
+
+    /**
+     * Fragment following each one along a kept overlap, or NONE.
+     */
+    private final int[] next;
+
+    /**
+     * Overlap of each fragment with the one following it.
+     */
+    private final int[] nextOverlap;
+
+    /**
+     * Whether each fragment follows another along a kept overlap.
+     */
+    private final boolean[] followsAnother;
+
+    /**
+     * Constructor.
+     *
+     * @param fragments
+     *            the fragments
+     * @param minOverlap
+     *            shortest overlap considered, and the number of leading
+     *            characters the hash index is keyed by
+     * @requires <pre>
+     * [no two entries of fragments are equal]  and
+     * [no entry of fragments is a substring of another]  and
+     * 1 <= minOverlap
+     * </pre>
+     */
+    OverlapGraphAssembler(String[] fragments, int minOverlap) {
+        assert fragments != null : "Violation of: fragments is not null";
+        assert 1 <= minOverlap : "Violation of: 1 <= minOverlap";
+        this.fragments = fragments.clone();
+        this.minOverlap = minOverlap;
+        int n = fragments.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> fragments[a].compareTo(fragments[b]));
+        this.rank = new int[n];
+        for (int r = 0; r < n; r++) {
+            this.rank[order[r]] = r;
+        }
+        int[] outPartner = new int[n];
+        int[] outOverlap = new int[n];
+        this.bestOverlaps(this.fragments, outPartner, outOverlap);
+        String[] reversed = new String[n];
+        for (int i = 0; i < n; i++) {
+            reversed[i] = new StringBuilder(fragments[i]).reverse().toString();
+        }
+        int[] inPartner = new int[n];
+        int[] inOverlap = new int[n];
+        this.bestOverlaps(reversed, inPartner, inOverlap);
+        this.next = new int[n];
+        this.nextOverlap = new int[n];
+        this.followsAnother = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int j = outPartner[i];
+            this.next[i] = NONE;
+            if (j != NONE && inPartner[j] == i) {
+                this.next[i] = j;
+                this.nextOverlap[i] = outOverlap[i];
+                this.followsAnother[j] = true;
+            }
+        }
+    }
+
+    /**
+     * Finds, for each string, the longest overlap of at least minOverlap of a
+     * suffix of it with a prefix of another, and the smallest other string (by
+     * rank) achieving it.
+     *
+     * @param strings
+     *            the strings
+     * @param partner
+     *            receives the partner of each string, or NONE
+     * @param overlap
+     *            receives the overlap of each string with its partner
+     * @replaces partner, overlap
+     */
+    private void bestOverlaps(String[] strings, int[] partner,
+            int[] overlap) {
+        /*
+         * Strings sharing the hash of their first minOverlap characters are
+         * chained through nextWithKey; only strings longer than minOverlap can
+         * be the second of an overlap of at least minOverlap
+         */
+        HashIndex firstWithKey = new HashIndex(strings.length);
+        int[] nextWithKey = new int[strings.length];
+        for (int j = 0; j < strings.length; j++) {
+            nextWithKey[j] = NONE;
+            if (strings[j].length() > this.minOverlap) {
+                nextWithKey[j] = firstWithKey.put(
+                        HashIndex.hash(strings[j], 0, this.minOverlap), j);
+            }
+        }
+        long power = HashIndex.power(this.minOverlap);
+        for (int i = 0; i < strings.length; i++) {
+            String str = strings[i];
+            partner[i] = NONE;
+            overlap[i] = 0;
+            long[] prefix = HashIndex.prefixHashes(str);
+            /*
+             * Longest suffixes first: the first one that is a prefix of
+             * another string wins
+             */
+            int last = str.length() - this.minOverlap;
+            for (int p = 1; p <= last && partner[i] == NONE; p++) {
+                int length = str.length() - p;
+                int j = firstWithKey.get(HashIndex.window(prefix, p,
+                        this.minOverlap, power));
+                while (j != NONE) {
+                    if (j != i && length < strings[j].length()
+                            && str.regionMatches(p, strings[j], 0, length)
+                            && (partner[i] == NONE
+                                    || this.rank[j] < this.rank[partner[i]])) {
+                        partner[i] = j;
+                        overlap[i] = length;
+                    }
+                    j = nextWithKey[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Spells out the contig starting at fragment i.
+     *
+     * @param i
+     *            the first fragment of the contig
+     * @param visited
+     *            marks the fragments spelled out so far
+     * @return the contig
+     * @updates visited
+     */
+    private String spell(int i, boolean[] visited) {
+        StringBuilder contig = new StringBuilder(this.fragments[i]);
+        visited[i] = true;
+        int v = i;
+        while (this.next[v] != NONE && !visited[this.next[v]]) {
+            int u = this.next[v];
+            contig.append(this.fragments[u], this.nextOverlap[v],
+                    this.fragments[u].length());
+            visited[u] = true;
+            v = u;
+        }
+        return contig.toString();
+    }
+
+    /**
+     * Returns the contigs: one per path of kept overlaps, and one per cycle
+     * of kept overlaps, cut before its smallest fragment.
+     *
+     * @return the contigs
+     */
+    List<String> contigs() {
+        int n = this.fragments.length;
+        int[] byRank = new int[n];
+        for (int i = 0; i < n; i++) {
+            byRank[this.rank[i]] = i;
+        }
+        boolean[] visited = new boolean[n];
+        List<String> contigs = new ArrayList<>();
+        for (int i : byRank) {
+            if (!this.followsAnother[i]) {
+                contigs.add(this.spell(i, visited));
+            }
+        }
+        /*
+         * What is left lies on cycles; the first fragment of each met in
+         * rank order is its smallest
+         */
+        for (int i : byRank) {
+            if (!visited[i]) {
+                contigs.add(this.spell(i, visited));
+            }
+        }
+        return contigs;
+    }
+
+}
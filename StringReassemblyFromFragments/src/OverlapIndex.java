@@ -0,0 +1,509 @@
+/**
+ * Index of the suffix-prefix overlaps among a fixed array of fragments, built
+ * as an Aho-Corasick automaton over the trie of the fragments (every trie node
+ * is a prefix of some fragment). The failure link of a node leads to the node
+ * of its longest proper suffix that is also in the trie, so the failure chain
+ * from the node of fragment i lists, longest first, every proper suffix of
+ * fragment i that is a prefix of some fragment. The fragments having a given
+ * prefix are the ones below its node, which a depth-first numbering of the
+ * trie turns into a contiguous range.
+ *
+ * <p>
+ * Building the index and finding the best overlap out of every fragment take
+ * time linear in the total length of the fragments (with one hash lookup per
+ * character), instead of the quadratic number of pairs times the
+ * quadratic cost of {@code StringReassembly.overlap} per pair.
+ *
+ * <p>
+ * Fragments can be withdrawn as partners (once their prefix is buried inside
+ * a merged string, say); the best overlap out of a fragment is then
+ * recomputed on request among the partners left, a union-find over the
+ * depth-first numbering skipping the withdrawn ones.
+ *
+ * <p>
+ * Ties are broken the same way everywhere: a larger overlap wins, then a
+ * smaller first string, then a smaller second string (in
+ * {@link String#compareTo} order).
+ *
+ * @author Kierra Smith
+ *
+ */
+final class OverlapIndex {
+
+    /**
+     * The root of the trie, the empty prefix.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Number of bits a character takes in a child-map key.
+     */
+    private static final int CHAR_BITS = Character.SIZE;
+
+    /**
+     * Marks a node where no fragment ends.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The fragments.
+     */
+    private final String[] fragments;
+
+    /**
+     * Number of trie nodes.
+     */
+    private int nodes;
+
+    /**
+     * Parent of each node.
+     */
+    private final int[] parent;
+
+    /**
+     * Character on the edge into each node.
+     */
+    private final char[] label;
+
+    /**
+     * Length of the prefix of each node.
+     */
+    private final int[] depth;
+
+    /**
+     * Fragment ending at each node, or NONE.
+     */
+    private final int[] terminal;
+
+    /**
+     * Child at the end of each trie edge, keyed by
+     * (node << CHAR_BITS) | character.
+     */
+    private final HashIndex edges;
+
+    /**
+     * Failure link of each node.
+     */
+    private final int[] fail;
+
+    /**
+     * Fragments in String.compareTo order (depth-first order of the trie).
+     */
+    private final int[] order;
+
+    /**
+     * Position of each fragment in order.
+     */
+    private final int[] position;
+
+    /**
+     * Union-find over positions in order: following the links from p leads
+     * to the first position at or after p whose fragment is still present
+     * (or to the end).
+     */
+    private final int[] nextPresent;
+
+    /**
+     * Start, in order, of the fragments below each node.
+     */
+    private final int[] low;
+
+    /**
+     * End, in order, of the fragments below each node.
+     */
+    private final int[] high;
+
+    /**
+     * Node of each fragment.
+     */
+    private final int[] node;
+
+    /**
+     * Largest overlap out of each fragment (suffix of it, prefix of another).
+     */
+    private final int[] bestOverlap;
+
+    /**
+     * Fragment achieving bestOverlap, or NONE if that is 0.
+     */
+    private final int[] bestPartner;
+
+    /**
+     * Constructor.
+     *
+     * @param fragments
+     *            the fragments, none of them a substring of another
+     * @requires <pre>
+     * [no two entries of fragments are equal]  and
+     * [fragments contains no empty string]
+     * </pre>
+     */
+    OverlapIndex(String[] fragments) {
+        assert fragments != null : "Violation of: fragments is not null";
+        this.fragments = fragments.clone();
+        int total = 1;
+        for (String s : fragments) {
+            total += s.length();
+        }
+        this.parent = new int[total];
+        this.label = new char[total];
+        this.depth = new int[total];
+        this.terminal = new int[total];
+        this.terminal[ROOT] = NONE;
+        this.edges = new HashIndex(total);
+        this.nodes = 1;
+        this.node = new int[fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            this.node[i] = this.insert(i);
+        }
+        int[] start = new int[this.nodes + 1];
+        int[] list = this.childLists(start);
+        int[] bfs = this.breadthFirstOrder(start, list);
+        this.fail = new int[this.nodes];
+        this.linkFailures(bfs);
+        this.order = new int[fragments.length];
+        this.position = new int[fragments.length];
+        this.nextPresent = new int[fragments.length + 1];
+        for (int p = 0; p <= fragments.length; p++) {
+            this.nextPresent[p] = p;
+        }
+        this.low = new int[this.nodes];
+        this.high = new int[this.nodes];
+        this.numberDepthFirst(bfs, start, list);
+        this.bestOverlap = new int[fragments.length];
+        this.bestPartner = new int[fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            this.findBest(i, NONE);
+        }
+    }
+
+    /**
+     * Returns the child of v along c.
+     *
+     * @param v
+     *            the node
+     * @param c
+     *            the character
+     * @return the child, or NONE
+     */
+    private int child(int v, char c) {
+        return this.edges.get(((long) v << CHAR_BITS) | c);
+    }
+
+    /**
+     * Adds fragment i to the trie.
+     *
+     * @param i
+     *            index of the fragment
+     * @return the node of the fragment
+     */
+    private int insert(int i) {
+        String s = this.fragments[i];
+        int v = ROOT;
+        for (int k = 0; k < s.length(); k++) {
+            char c = s.charAt(k);
+            int u = this.child(v, c);
+            if (u == NONE) {
+                u = this.nodes;
+                this.nodes++;
+                this.parent[u] = v;
+                this.label[u] = c;
+                this.depth[u] = k + 1;
+                this.terminal[u] = NONE;
+                this.edges.put(((long) v << CHAR_BITS) | c, u);
+            }
+            v = u;
+        }
+        this.terminal[v] = i;
+        return v;
+    }
+
+    /**
+     * Returns the child lists of every node, children in character order, as
+     * a flat array: the children of v are at [start[v], start[v + 1]).
+     *
+     * @param start
+     *            receives the start of each list (nodes + 1 entries)
+     * @return the flat array of children
+     */
+    private int[] childLists(int[] start) {
+        for (int u = 1; u < this.nodes; u++) {
+            start[this.parent[u] + 1]++;
+        }
+        for (int v = 0; v < this.nodes; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] fill = new int[this.nodes];
+        int[] list = new int[Math.max(this.nodes - 1, 0)];
+        for (int u = 1; u < this.nodes; u++) {
+            int p = this.parent[u];
+            int at = start[p] + fill[p];
+            fill[p]++;
+            /*
+             * Insertion sort by character; lists are at most as long as the
+             * alphabet
+             */
+            while (at > start[p] && this.label[list[at - 1]] > this.label[u]) {
+                list[at] = list[at - 1];
+                at--;
+            }
+            list[at] = u;
+        }
+        return list;
+    }
+
+    /**
+     * Returns the nodes in breadth-first order.
+     *
+     * @param start
+     *            start of the child list of each node
+     * @param list
+     *            the child lists
+     * @return the nodes, root first
+     */
+    private int[] breadthFirstOrder(int[] start, int[] list) {
+        int[] queue = new int[this.nodes];
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head];
+            for (int k = start[v]; k < start[v + 1]; k++) {
+                queue[tail] = list[k];
+                tail++;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Computes the failure link of every node.
+     *
+     * @param bfs
+     *            the nodes in breadth-first order
+     */
+    private void linkFailures(int[] bfs) {
+        for (int k = 1; k < bfs.length; k++) {
+            int u = bfs[k];
+            int v = this.parent[u];
+            int link = ROOT;
+            if (v != ROOT) {
+                char c = this.label[u];
+                int f = this.fail[v];
+                while (f != ROOT && this.child(f, c) == NONE) {
+                    f = this.fail[f];
+                }
+                int g = this.child(f, c);
+                if (g != NONE) {
+                    link = g;
+                }
+            }
+            this.fail[u] = link;
+        }
+    }
+
+    /**
+     * Numbers the fragments in depth-first order of the trie (which is
+     * String.compareTo order) and records the range below each node.
+     *
+     * @param bfs
+     *            the nodes in breadth-first order
+     * @param start
+     *            start of the child list of each node
+     * @param list
+     *            the child lists
+     */
+    private void numberDepthFirst(int[] bfs, int[] start, int[] list) {
+        /*
+         * Count the fragments below each node, children before parents
+         */
+        int[] below = new int[this.nodes];
+        for (int k = bfs.length - 1; k >= 0; k--) {
+            int v = bfs[k];
+            if (this.terminal[v] != NONE) {
+                below[v]++;
+            }
+            if (v != ROOT) {
+                below[this.parent[v]] += below[v];
+            }
+        }
+        /*
+         * Assign ranges top-down: a node's own fragment comes first, then its
+         * children in character order
+         */
+        for (int v : bfs) {
+            int next = this.low[v];
+            this.high[v] = this.low[v] + below[v];
+            if (this.terminal[v] != NONE) {
+                this.order[next] = this.terminal[v];
+                this.position[this.terminal[v]] = next;
+                next++;
+            }
+            for (int k = start[v]; k < start[v + 1]; k++) {
+                int u = list[k];
+                this.low[u] = next;
+                next += below[u];
+            }
+        }
+    }
+
+    /**
+     * Returns the first position at or after p whose fragment is present.
+     *
+     * @param p
+     *            position in order
+     * @return the position, or size() if there is none
+     */
+    private int presentFrom(int p) {
+        int q = p;
+        while (this.nextPresent[q] != q) {
+            this.nextPresent[q] = this.nextPresent[this.nextPresent[q]];
+            q = this.nextPresent[q];
+        }
+        return q;
+    }
+
+    /**
+     * Finds the largest overlap out of fragment i and the smallest fragment
+     * achieving it, among the partners left other than i and exclude.
+     *
+     * @param i
+     *            index of the fragment
+     * @param exclude
+     *            index of a fragment not to pair i with, or -1
+     */
+    private void findBest(int i, int exclude) {
+        int overlap = 0;
+        int partner = NONE;
+        int v = this.fail[this.node[i]];
+        while (v != ROOT && partner == NONE) {
+            int q = this.presentFrom(this.low[v]);
+            while (q < this.high[v]
+                    && (this.order[q] == i || this.order[q] == exclude)) {
+                q = this.presentFrom(q + 1);
+            }
+            if (q < this.high[v]) {
+                partner = this.order[q];
+                overlap = this.depth[v];
+            }
+            v = this.fail[v];
+        }
+        this.bestOverlap[i] = overlap;
+        this.bestPartner[i] = partner;
+    }
+
+    /**
+     * Reports the number of fragments.
+     *
+     * @return the number of fragments
+     */
+    int size() {
+        return this.fragments.length;
+    }
+
+    /**
+     * Returns fragment i.
+     *
+     * @param i
+     *            index of the fragment
+     * @return the fragment
+     */
+    String fragment(int i) {
+        return this.fragments[i];
+    }
+
+    /**
+     * Reports the position of fragment i in String.compareTo order.
+     *
+     * @param i
+     *            index of the fragment
+     * @return the number of fragments less than fragment i
+     */
+    int rank(int i) {
+        return this.position[i];
+    }
+
+    /**
+     * Reports whether fragment i can still be a partner.
+     *
+     * @param i
+     *            index of the fragment
+     * @return true iff i has not been withdrawn
+     */
+    boolean isPartner(int i) {
+        int p = this.position[i];
+        return this.nextPresent[p] == p;
+    }
+
+    /**
+     * Withdraws fragment i as a partner. The best overlaps of fragments that
+     * had i as partner are stale until {@link #update(int, int)}.
+     *
+     * @param i
+     *            index of the fragment
+     * @requires isPartner(i)
+     */
+    void withdraw(int i) {
+        assert this.isPartner(i) : "Violation of: isPartner(i)";
+        int p = this.position[i];
+        this.nextPresent[p] = p + 1;
+    }
+
+    /**
+     * Recomputes the best overlap out of fragment i among the partners left,
+     * other than exclude.
+     *
+     * @param i
+     *            index of the fragment
+     * @param exclude
+     *            index of a fragment not to pair i with, or -1
+     */
+    void update(int i, int exclude) {
+        this.findBest(i, exclude);
+    }
+
+    /**
+     * Returns the largest overlap of a suffix of fragment i with a prefix of
+     * another fragment, as of the last update of i.
+     *
+     * @param i
+     *            index of the fragment
+     * @return the overlap, 0 if there is none
+     */
+    int bestOverlap(int i) {
+        return this.bestOverlap[i];
+    }
+
+    /**
+     * Returns the smallest partner achieving bestOverlap(i).
+     *
+     * @param i
+     *            index of the fragment
+     * @return index of the partner, or -1 if bestOverlap(i) = 0
+     */
+    int bestPartner(int i) {
+        return this.bestPartner[i];
+    }
+
+    /**
+     * Returns the largest overlap between a suffix of one fragment and a
+     * prefix of another, and the two fragments achieving it. Only valid while
+     * no fragment has been withdrawn.
+     *
+     * @param bestTwo
+     *            receives the two fragments (unchanged if the overlap is 0)
+     * @return the overlap
+     * @replaces bestTwo[0], bestTwo[1]
+     * @requires bestTwo.length >= 2
+     */
+    int best(String[] bestTwo) {
+        int overlap = 0;
+        for (int i : this.order) {
+            if (this.bestOverlap[i] > overlap) {
+                overlap = this.bestOverlap[i];
+                bestTwo[0] = this.fragments[i];
+                bestTwo[1] = this.fragments[this.bestPartner[i]];
+            }
+        }
+        return overlap;
+    }
+
+}
@@ -0,0 +1,22 @@
+/**
+ * The ways {@code StringReassembly.overlap} can find the longest suffix of one
+ * string that is a prefix of another.
+ *
+ * @author Kierra Smith
+ *
+ */
+public enum OverlapKernel {
+
+    /**
+     * Tries each overlap, longest first, with {@code String.regionMatches};
+     * quadratic in the length of the strings in the worst case.
+     */
+    REGION_MATCHES,
+
+    /**
+     * Runs the Knuth-Morris-Pratt automaton of the second string over the end
+     * of the first; linear in the length of the second string.
+     */
+    PREFIX_FUNCTION
+
+}
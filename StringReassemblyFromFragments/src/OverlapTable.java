@@ -0,0 +1,208 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The suffix-prefix overlaps of every ordered pair of a fixed array of
+ * strings, computed in square tiles on a fork-join pool. Only the best pair
+ * of each tile is kept (the table itself would take memory quadratic in the
+ * number of strings), and tiles are combined by the order
+ * {@code StringReassembly.bestOverlap} uses (larger overlap, then smaller
+ * first string, then smaller second string). That order is total on pairs of
+ * distinct strings, so the best pair does not depend on how the tiles were
+ * split or scheduled, nor on the number of threads.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class OverlapTable {
+
+    /**
+     * Side of a tile, in strings.
+     */
+    private static final int TILE = 64;
+
+    /**
+     * The strings.
+     */
+    private final String[] strings;
+
+    /**
+     * Best pair: { overlap, i, j }, or null if no pair overlaps.
+     */
+    private final int[] best;
+
+    /**
+     * Constructor.
+     *
+     * @param strings
+     *            the strings
+     * @param kernel
+     *            the way to find the overlap of each pair
+     * @param pool
+     *            pool to compute the tiles on
+     * @requires <pre>
+     * [no two entries of strings are equal]  and
+     * [no entry of strings is a substring of another]
+     * </pre>
+     */
+    OverlapTable(String[] strings, OverlapKernel kernel, ForkJoinPool pool) {
+        assert strings != null : "Violation of: strings is not null";
+        assert kernel != null : "Violation of: kernel is not null";
+        assert pool != null : "Violation of: pool is not null";
+        this.strings = strings.clone();
+        int tiles = (strings.length + TILE - 1) / TILE;
+        this.best = pool.invoke(new Tiles(this, kernel, 0, tiles * tiles));
+    }
+
+    /**
+     * Reports whether pair a comes before pair b: a larger overlap, then a
+     * smaller first string, then a smaller second string.
+     *
+     * @param a
+     *            { overlap, i, j }, or null
+     * @param b
+     *            { overlap, i, j }, or null
+     * @return true iff a is not null and comes before b (or b is null)
+     */
+    private boolean precedes(int[] a, int[] b) {
+        boolean precedes;
+        if (a == null || b == null) {
+            precedes = a != null;
+        } else {
+            int c = Integer.compare(b[0], a[0]);
+            if (c == 0) {
+                c = this.strings[a[1]].compareTo(this.strings[b[1]]);
+            }
+            if (c == 0) {
+                c = this.strings[a[2]].compareTo(this.strings[b[2]]);
+            }
+            precedes = c < 0;
+        }
+        return precedes;
+    }
+
+    /**
+     * Computes the overlaps of one tile, keeping only the best.
+     *
+     * @param kernel
+     *            the way to find the overlap of each pair
+     * @param tile
+     *            the tile, numbered row by row
+     * @return the best pair of the tile, or null if none overlaps
+     */
+    private int[] bestOfTile(OverlapKernel kernel, int tile) {
+        int tiles = (this.strings.length + TILE - 1) / TILE;
+        int rowFrom = (tile / tiles) * TILE;
+        int rowTo = Math.min(rowFrom + TILE, this.strings.length);
+        int columnFrom = (tile % tiles) * TILE;
+        int columnTo = Math.min(columnFrom + TILE, this.strings.length);
+        int[] tileBest = null;
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int j = columnFrom; j < columnTo; j++) {
+                if (i != j) {
+                    int overlap = StringReassembly.overlap(this.strings[i],
+                            this.strings[j], kernel);
+                    if (overlap > 0
+                            && (tileBest == null || overlap >= tileBest[0])) {
+                        int[] pair = { overlap, i, j };
+                        if (this.precedes(pair, tileBest)) {
+                            tileBest = pair;
+                        }
+                    }
+                }
+            }
+        }
+        return tileBest;
+    }
+
+    /**
+     * Task computing tiles [from, to) and returning their best pair.
+     */
+    private static final class Tiles extends RecursiveTask<int[]> {
+
+        /**
+         * Serialization id (tasks are never serialized).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The table being computed.
+         */
+        private final transient OverlapTable table;
+
+        /**
+         * The way to find the overlap of each pair.
+         */
+        private final OverlapKernel kernel;
+
+        /**
+         * First tile of this task.
+         */
+        private final int from;
+
+        /**
+         * One past the last tile of this task.
+         */
+        private final int to;
+
+        /**
+         * Constructor.
+         *
+         * @param table
+         *            the table being computed
+         * @param kernel
+         *            the way to find the overlap of each pair
+         * @param from
+         *            first tile
+         * @param to
+         *            one past the last tile
+         */
+        Tiles(OverlapTable table, OverlapKernel kernel, int from, int to) {
+            this.table = table;
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            int[] best = null;
+            if (this.to - this.from > 1) {
+                int mid = (this.from + this.to) >>> 1;
+                Tiles left = new Tiles(this.table, this.kernel, this.from,
+                        mid);
+                Tiles right = new Tiles(this.table, this.kernel, mid, this.to);
+                invokeAll(left, right);
+                best = left.join();
+                if (this.table.precedes(right.join(), best)) {
+                    best = right.join();
+                }
+            } else if (this.to > this.from) {
+                best = this.table.bestOfTile(this.kernel, this.from);
+            }
+            return best;
+        }
+
+    }
+
+    /**
+     * Returns the largest overlap between a suffix of one string and a prefix
+     * of another, and the two strings achieving it.
+     *
+     * @param bestTwo
+     *            receives the two strings (unchanged if the overlap is 0)
+     * @return the overlap
+     * @replaces bestTwo[0], bestTwo[1]
+     * @requires bestTwo.length >= 2
+     */
+    int best(String[] bestTwo) {
+        int overlap = 0;
+        if (this.best != null) {
+            overlap = this.best[0];
+            bestTwo[0] = this.strings[this.best[1]];
+            bestTwo[1] = this.strings[this.best[2]];
+        }
+        return overlap;
+    }
+
+}
@@ -0,0 +1,281 @@
+/**
+ * Immutable string built from pieces of other strings, as a height-balanced
+ * (AVL) tree of concatenations whose leaves are substrings of the pieces.
+ * Concatenating two ropes, and taking a prefix or suffix view of one, take
+ * time logarithmic in the number of pieces and copy no characters; the
+ * characters are copied once, in order, when the rope is flattened by
+ * {@link #appendTo(StringBuilder)} or {@link #toString()}.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class Rope implements CharSequence {
+
+    /**
+     * The empty rope.
+     */
+    private static final Rope EMPTY = new Rope("", 0, 0);
+
+    /**
+     * Left subtree, or null for a leaf.
+     */
+    private final Rope left;
+
+    /**
+     * Right subtree, or null for a leaf.
+     */
+    private final Rope right;
+
+    /**
+     * Piece a leaf is a substring of, or null for a concatenation.
+     */
+    private final String piece;
+
+    /**
+     * Start of a leaf in its piece.
+     */
+    private final int from;
+
+    /**
+     * Number of characters.
+     */
+    private final int length;
+
+    /**
+     * Height of the tree, 0 for a leaf.
+     */
+    private final int height;
+
+    /**
+     * Leaf constructor.
+     *
+     * @param piece
+     *            the piece
+     * @param from
+     *            start of the leaf in piece
+     * @param to
+     *            end of the leaf in piece
+     */
+    private Rope(String piece, int from, int to) {
+        this.left = null;
+        this.right = null;
+        this.piece = piece;
+        this.from = from;
+        this.length = to - from;
+        this.height = 0;
+    }
+
+    /**
+     * Concatenation constructor.
+     *
+     * @param left
+     *            the left subtree
+     * @param right
+     *            the right subtree
+     */
+    private Rope(Rope left, Rope right) {
+        this.left = left;
+        this.right = right;
+        this.piece = null;
+        this.from = 0;
+        this.length = left.length + right.length;
+        this.height = Math.max(left.height, right.height) + 1;
+    }
+
+    /**
+     * Returns a rope of str.
+     *
+     * @param str
+     *            the string
+     * @return the rope
+     */
+    static Rope of(String str) {
+        assert str != null : "Violation of: str is not null";
+        return new Rope(str, 0, str.length());
+    }
+
+    /**
+     * Returns the concatenation of two ropes whose heights differ by at most
+     * 2, rotating once or twice if they differ by 2.
+     *
+     * @param left
+     *            the left rope
+     * @param right
+     *            the right rope
+     * @return left * right, balanced
+     */
+    private static Rope balance(Rope left, Rope right) {
+        Rope result;
+        if (left.height > right.height + 1) {
+            if (left.left.height >= left.right.height) {
+                result = new Rope(left.left, new Rope(left.right, right));
+            } else {
+                result = new Rope(new Rope(left.left, left.right.left),
+                        new Rope(left.right.right, right));
+            }
+        } else if (right.height > left.height + 1) {
+            if (right.right.height >= right.left.height) {
+                result = new Rope(new Rope(left, right.left), right.right);
+            } else {
+                result = new Rope(new Rope(left, right.left.left),
+                        new Rope(right.left.right, right.right));
+            }
+        } else {
+            result = new Rope(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the concatenation of two nonempty ropes, descending the taller
+     * one to a subtree about as tall as the other; this takes time
+     * proportional to the difference of their heights.
+     *
+     * @param left
+     *            the left rope
+     * @param right
+     *            the right rope
+     * @return left * right, balanced
+     */
+    private static Rope join(Rope left, Rope right) {
+        Rope result;
+        if (left.height > right.height + 1) {
+            result = balance(left.left, join(left.right, right));
+        } else if (right.height > left.height + 1) {
+            result = balance(join(left, right.left), right.right);
+        } else {
+            result = new Rope(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the concatenation of two ropes.
+     *
+     * @param left
+     *            the left rope
+     * @param right
+     *            the right rope
+     * @return left * right
+     */
+    static Rope concat(Rope left, Rope right) {
+        assert left != null : "Violation of: left is not null";
+        assert right != null : "Violation of: right is not null";
+        Rope result;
+        if (left.length == 0) {
+            result = right;
+        } else if (right.length == 0) {
+            result = left;
+        } else {
+            result = join(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first n characters of this, as a view.
+     *
+     * @param n
+     *            number of characters
+     * @return this[0, n)
+     * @requires 0 <= n <= |this|
+     */
+    Rope prefix(int n) {
+        assert 0 <= n && n <= this.length : "Violation of: 0 <= n <= |this|";
+        Rope result;
+        if (n == this.length) {
+            result = this;
+        } else if (n == 0) {
+            result = EMPTY;
+        } else if (this.piece != null) {
+            result = new Rope(this.piece, this.from, this.from + n);
+        } else if (n <= this.left.length) {
+            result = this.left.prefix(n);
+        } else {
+            result = concat(this.left, this.right.prefix(n - this.left.length));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the last n characters of this, as a view.
+     *
+     * @param n
+     *            number of characters
+     * @return this[|this| - n, |this|)
+     * @requires 0 <= n <= |this|
+     */
+    Rope suffix(int n) {
+        assert 0 <= n && n <= this.length : "Violation of: 0 <= n <= |this|";
+        Rope result;
+        if (n == this.length) {
+            result = this;
+        } else if (n == 0) {
+            result = EMPTY;
+        } else if (this.piece != null) {
+            result = new Rope(this.piece, this.from + this.length - n,
+                    this.from + this.length);
+        } else if (n <= this.right.length) {
+            result = this.right.suffix(n);
+        } else {
+            result = concat(this.left.suffix(n - this.right.length),
+                    this.right);
+        }
+        return result;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        assert 0 <= index && index < this.length : ""
+                + "Violation of: 0 <= index < |this|";
+        Rope node = this;
+        int i = index;
+        while (node.piece == null) {
+            if (i < node.left.length) {
+                node = node.left;
+            } else {
+                i -= node.left.length;
+                node = node.right;
+            }
+        }
+        return node.piece.charAt(node.from + i);
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) {
+        assert 0 <= start && start <= end && end <= this.length : ""
+                + "Violation of: 0 <= start <= end <= |this|";
+        return this.prefix(end).suffix(end - start);
+    }
+
+    /**
+     * Appends the characters of this to out, piece by piece.
+     *
+     * @param out
+     *            the builder
+     * @updates out
+     * @ensures out = #out * this
+     */
+    void appendTo(StringBuilder out) {
+        assert out != null : "Violation of: out is not null";
+        if (this.piece != null) {
+            out.append(this.piece, this.from, this.from + this.length);
+        } else {
+            this.left.appendTo(out);
+            this.right.appendTo(out);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(this.length);
+        this.appendTo(out);
+        return out.toString();
+    }
+
+}
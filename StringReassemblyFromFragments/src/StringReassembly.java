@@ -1,3 +1,5 @@
+import java.util.concurrent.ForkJoinPool;
+
 import components.set.Set;
 import components.set.Set1L;
 import components.simplereader.SimpleReader;
@@ -91,18 +93,78 @@ public final class StringReassembly {
      * </pre>
      */
     public static int overlap(String str1, String str2) {
+        return overlap(str1, str2, OverlapKernel.REGION_MATCHES);
+    }
+
+    /**
+     * Reports the maximum length of a common suffix of {@code str1} and prefix
+     * of {@code str2}, found by the given kernel; every kernel reports the
+     * same overlap.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @param kernel
+     *            the way to find the overlap
+     * @return maximum overlap between right end of {@code str1} and left end of
+     *         {@code str2}
+     * @requires <pre>
+     * str1 is not substring of str2  and
+     * str2 is not substring of str1
+     * </pre>
+     * @ensures <pre>
+     * OVERLAPS(str1, str2, overlap)  and
+     * for all k: integer
+     *     where (overlap < k  and  k <= |str1|  and  k <= |str2|)
+     *  (not OVERLAPS(str1, str2, k))
+     * </pre>
+     */
+    public static int overlap(String str1, String str2, OverlapKernel kernel) {
         assert str1 != null : "Violation of: str1 is not null";
         assert str2 != null : "Violation of: str2 is not null";
+        assert kernel != null : "Violation of: kernel is not null";
         assert str2.indexOf(str1) < 0 : "Violation of: "
                 + "str1 is not substring of str2";
         assert str1.indexOf(str2) < 0 : "Violation of: "
                 + "str2 is not substring of str1";
+        int overlap;
+        if (kernel == OverlapKernel.PREFIX_FUNCTION) {
+            overlap = prefixFunctionOverlap(str1, str2);
+        } else {
+            overlap = regionMatchesOverlap(str1, str2);
+        }
+        return overlap;
+    }
+
+    /**
+     * Reports the maximum length of a common suffix of {@code str1} and prefix
+     * of {@code str2} by trying each length, longest first.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @return maximum overlap between right end of {@code str1} and left end of
+     *         {@code str2}
+     * @requires <pre>
+     * str1 is not substring of str2  and
+     * str2 is not substring of str1
+     * </pre>
+     * @ensures <pre>
+     * OVERLAPS(str1, str2, overlap)  and
+     * for all k: integer
+     *     where (overlap < k  and  k <= |str1|  and  k <= |str2|)
+     *  (not OVERLAPS(str1, str2, k))
+     * </pre>
+     */
+    private static int regionMatchesOverlap(String str1, String str2) {
         /*
          * Start with maximum possible overlap and work down until a match is
          * found; think about it and try it on some examples to see why
          * iterating in the other direction doesn't work
          */
-        int maxOverlap = str2.length() - 1;
+        int maxOverlap = Math.min(str1.length(), str2.length() - 1);
         while (!str1.regionMatches(str1.length() - maxOverlap, str2, 0,
                 maxOverlap)) {
             maxOverlap--;
@@ -110,6 +172,64 @@ public final class StringReassembly {
         return maxOverlap;
     }
 
+    /**
+     * Reports the maximum length of a common suffix of {@code str1} and prefix
+     * of {@code str2} by running the Knuth-Morris-Pratt automaton of
+     * {@code str2} over the last {@code |str2| - 1} characters of
+     * {@code str1}: the state reached is the longest prefix of {@code str2}
+     * ending there.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @return maximum overlap between right end of {@code str1} and left end of
+     *         {@code str2}
+     * @requires <pre>
+     * str1 is not substring of str2  and
+     * str2 is not substring of str1
+     * </pre>
+     * @ensures <pre>
+     * OVERLAPS(str1, str2, overlap)  and
+     * for all k: integer
+     *     where (overlap < k  and  k <= |str1|  and  k <= |str2|)
+     *  (not OVERLAPS(str1, str2, k))
+     * </pre>
+     */
+    private static int prefixFunctionOverlap(String str1, String str2) {
+        /*
+         * border[k] is the length of the longest proper prefix of str2[0, k)
+         * that is also a suffix of it
+         */
+        int[] border = new int[Math.max(str2.length(), 1)];
+        int k = 0;
+        for (int q = 1; q < str2.length() - 1; q++) {
+            while (k > 0 && str2.charAt(q) != str2.charAt(k)) {
+                k = border[k];
+            }
+            if (str2.charAt(q) == str2.charAt(k)) {
+                k++;
+            }
+            border[q + 1] = k;
+        }
+        /*
+         * No overlap is as long as str2, so the scan can start where one of
+         * |str2| - 1 characters would, and never completes a match of str2
+         */
+        int matched = 0;
+        int start = Math.max(0, str1.length() - str2.length() + 1);
+        for (int p = start; p < str1.length(); p++) {
+            char c = str1.charAt(p);
+            while (matched > 0 && str2.charAt(matched) != c) {
+                matched = border[matched];
+            }
+            if (str2.charAt(matched) == c) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
     /**
      * Returns concatenation of {@code str1} and {@code str2} from which one of
      * the two "copies" of the common string of {@code overlap} characters at
@@ -138,6 +258,34 @@ public final class StringReassembly {
         return str1 + str2.substring(overlap, str2.length());
     }
 
+    /**
+     * Returns concatenation of {@code str1} and {@code str2} from which one of
+     * the two "copies" of the common string of {@code overlap} characters at
+     * the end of {@code str1} and the beginning of {@code str2} has been
+     * removed, as a rope: no characters are copied, and the time taken is
+     * logarithmic in the number of pieces of {@code str1} and {@code str2}.
+     *
+     * @param str1
+     *            first string
+     * @param str2
+     *            second string
+     * @param overlap
+     *            amount of overlap
+     * @return combination with one "copy" of overlap removed
+     * @requires OVERLAPS(str1, str2, overlap)
+     * @ensures combination = str1[0, |str1|-overlap) * str2
+     */
+    static Rope combination(Rope str1, Rope str2, int overlap) {
+        assert str1 != null : "Violation of: str1 is not null";
+        assert str2 != null : "Violation of: str2 is not null";
+        assert 0 <= overlap && overlap <= str1.length()
+                && overlap <= str2.length()
+                && str1.suffix(overlap).toString()
+                        .equals(str2.prefix(overlap).toString()) : ""
+                                + "Violation of: OVERLAPS(str1, str2, overlap)";
+        return Rope.concat(str1, str2.suffix(str2.length() - overlap));
+    }
+
     /**
      * Adds {@code str} to {@code strSet} if and only if it is not a substring
      * of any string already in {@code strSet}; and if it is added, also removes
@@ -163,34 +311,34 @@ public final class StringReassembly {
         /*
          * Note: Precondition not checked!
          */
-        //initialize set and variables
-        Set<String> temp = new Set1L<>();
-        String str2 = "";
-        boolean isSet = false;
-        boolean isDifferent = false;
-        //runs while strSet is greater than 0
-        while (strSet.size() > 0) {
-            str2 = strSet.removeAny();
-            if (str.contains(str2)) {
-                isSet = true;
-            } else if (str2.contains(str)) {
-                //add str2 to temp
-                temp.add(str2);
-            } else {
-                isDifferent = true;
-                temp.add(str2);
+        /*
+         * Decide containment both ways in one pass, then update strSet in
+         * place rather than rebuilding it
+         */
+        boolean covered = false;
+        Set<String> substrings = new Set1L<>();
+        for (String str2 : strSet) {
+            if (str2.contains(str)) {
+                covered = true;
+            } else if (str.contains(str2)) {
+                substrings.add(str2);
             }
         }
-        if (isDifferent || isSet) {
-            temp.add(str2);
+        if (!covered) {
+            for (String str2 : substrings) {
+                strSet.remove(str2);
+            }
+            strSet.add(str);
         }
-        //give strSet new value of the temp value
-        strSet.transferFrom(temp);
     }
 
     /**
      * Returns the set of all individual lines read from {@code input}, except
      * that any line that is a substring of another is not in the returned set.
+     * Containment is decided by a {@code SubstringIndex} of the lines kept so
+     * far, which costs about the length of each line rather than a pass over
+     * every line kept (except for lines shorter than 5 characters), in memory
+     * proportional to the lines kept.
      *
      * @param input
      *            source of strings, one per line
@@ -206,23 +354,49 @@ public final class StringReassembly {
         assert input != null : "Violation of: input is not null";
         assert input.isOpen() : "Violation of: input.is_open";
 
-        Set<String> set = new Set1L<>();
+        SubstringIndex lines = new SubstringIndex();
         //runs while the input is not finished reading
         while (!input.atEOS()) {
             //creates a string from the input
             String line = input.nextLine();
-            //check for substrings by calling a previous method
-            addToSetAvoidingSubstrings(set, line);
+            //keep it only if no line read so far contains it
+            lines.add(line);
+        }
+        Set<String> set = new Set1L<>();
+        for (String line : lines.strings()) {
+            set.add(line);
         }
 
         //return the set
         return set;
     }
 
+    /**
+     * Returns the strings of {@code strSet} in an array.
+     *
+     * @param strSet
+     *            the set
+     * @return the strings of {@code strSet}, in iteration order
+     * @ensures elements(toArray) = strSet and |toArray| = |strSet|
+     */
+    private static String[] toArray(Set<String> strSet) {
+        String[] strings = new String[strSet.size()];
+        int i = 0;
+        for (String str : strSet) {
+            strings[i] = str;
+            i++;
+        }
+        return strings;
+    }
+
     /**
      * Returns the longest overlap between the suffix of one string and the
      * prefix of another string in {@code strSet}, and identifies the two
-     * strings that achieve that overlap.
+     * strings that achieve that overlap. The overlaps are found with an
+     * {@code OverlapIndex}, in time linear in the total length of the strings;
+     * among pairs with the same overlap, the one with the smaller first string
+     * (then the smaller second string) is chosen, so the result does not
+     * depend on the iteration order of {@code strSet}.
      *
      * @param strSet
      *            the set of strings examined
@@ -253,52 +427,135 @@ public final class StringReassembly {
         /*
          * Note: Rest of precondition not checked!
          */
+        return new OverlapIndex(toArray(strSet)).best(bestTwo);
+    }
+
+    /**
+     * Returns the longest overlap between the suffix of one string and the
+     * prefix of another string in {@code strSet}, and identifies the two
+     * strings that achieve that overlap. Every pair of strings is given to
+     * {@link #overlap(String, String, OverlapKernel)} with the given kernel;
+     * the result, ties included, is the one the two-argument
+     * {@code bestOverlap} finds with its index.
+     *
+     * @param strSet
+     *            the set of strings examined
+     * @param bestTwo
+     *            an array containing (upon return) the two strings with the
+     *            largest such overlap between the suffix of {@code bestTwo[0]}
+     *            and the prefix of {@code bestTwo[1]}
+     * @param kernel
+     *            the way to find the overlap of each pair
+     * @return the amount of overlap between those two strings
+     * @replaces bestTwo[0], bestTwo[1]
+     * @requires <pre>
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * bestTwo.length >= 2
+     * </pre>
+     * @ensures <pre>
+     * bestTwo[0] is in strSet  and
+     * bestTwo[1] is in strSet  and
+     * OVERLAPS(bestTwo[0], bestTwo[1], bestOverlap)  and
+     * for all str1, str2: string of character, overlap: integer
+     *     where (str1 is in strSet  and  str2 is in strSet  and
+     *            OVERLAPS(str1, str2, overlap))
+     *   (overlap <= bestOverlap)
+     * </pre>
+     */
+    static int bestOverlap(Set<String> strSet, String[] bestTwo,
+            OverlapKernel kernel) {
+        assert strSet != null : "Violation of: strSet is not null";
+        assert bestTwo != null : "Violation of: bestTwo is not null";
+        assert bestTwo.length >= 2 : "Violation of: bestTwo.length >= 2";
+        assert kernel != null : "Violation of: kernel is not null";
+        /*
+         * Note: Rest of precondition not checked!
+         */
+        String[] strings = toArray(strSet);
         int bestOverlap = 0;
-        Set<String> processed = strSet.newInstance();
-        while (strSet.size() > 0) {
-            /*
-             * Remove one string from strSet to check against all others
-             */
-            String str0 = strSet.removeAny();
-            for (String str1 : strSet) {
-                /*
-                 * Check str0 and str1 for overlap first in one order...
-                 */
-                int overlapFrom0To1 = overlap(str0, str1);
-                if (overlapFrom0To1 > bestOverlap) {
-                    /*
-                     * Update best overlap found so far, and the two strings
-                     * that produced it
-                     */
-                    bestOverlap = overlapFrom0To1;
-                    bestTwo[0] = str0;
-                    bestTwo[1] = str1;
-                }
-                /*
-                 * ... and then in the other order
-                 */
-                int overlapFrom1To0 = overlap(str1, str0);
-                if (overlapFrom1To0 > bestOverlap) {
-                    /*
-                     * Update best overlap found so far, and the two strings
-                     * that produced it
-                     */
-                    bestOverlap = overlapFrom1To0;
-                    bestTwo[0] = str1;
-                    bestTwo[1] = str0;
+        for (String str0 : strings) {
+            for (String str1 : strings) {
+                if (!str0.equals(str1)) {
+                    int overlap = overlap(str0, str1, kernel);
+                    if (overlap > bestOverlap || (overlap == bestOverlap
+                            && overlap > 0 && precedes(str0, str1, bestTwo))) {
+                        bestOverlap = overlap;
+                        bestTwo[0] = str0;
+                        bestTwo[1] = str1;
+                    }
                 }
             }
-            /*
-             * Record that str0 has been checked against every other string in
-             * strSet
-             */
-            processed.add(str0);
         }
+        return bestOverlap;
+    }
+
+    /**
+     * Returns the longest overlap between the suffix of one string and the
+     * prefix of another string in {@code strSet}, and identifies the two
+     * strings that achieve that overlap. The overlaps of all pairs are
+     * computed with the given kernel in tiles on {@code pool}; the result,
+     * ties included, is the one the two-argument {@code bestOverlap} finds,
+     * whatever the parallelism of {@code pool}.
+     *
+     * @param strSet
+     *            the set of strings examined
+     * @param bestTwo
+     *            an array containing (upon return) the two strings with the
+     *            largest such overlap between the suffix of {@code bestTwo[0]}
+     *            and the prefix of {@code bestTwo[1]}
+     * @param kernel
+     *            the way to find the overlap of each pair
+     * @param pool
+     *            pool to compute the overlaps on
+     * @return the amount of overlap between those two strings
+     * @replaces bestTwo[0], bestTwo[1]
+     * @requires <pre>
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * bestTwo.length >= 2
+     * </pre>
+     * @ensures <pre>
+     * bestTwo[0] is in strSet  and
+     * bestTwo[1] is in strSet  and
+     * OVERLAPS(bestTwo[0], bestTwo[1], bestOverlap)  and
+     * for all str1, str2: string of character, overlap: integer
+     *     where (str1 is in strSet  and  str2 is in strSet  and
+     *            OVERLAPS(str1, str2, overlap))
+     *   (overlap <= bestOverlap)
+     * </pre>
+     */
+    static int bestOverlap(Set<String> strSet, String[] bestTwo,
+            OverlapKernel kernel, ForkJoinPool pool) {
+        assert strSet != null : "Violation of: strSet is not null";
+        assert bestTwo != null : "Violation of: bestTwo is not null";
+        assert bestTwo.length >= 2 : "Violation of: bestTwo.length >= 2";
+        assert kernel != null : "Violation of: kernel is not null";
+        assert pool != null : "Violation of: pool is not null";
         /*
-         * Restore strSet and return best overlap
+         * Note: Rest of precondition not checked!
          */
-        strSet.transferFrom(processed);
-        return bestOverlap;
+        return new OverlapTable(toArray(strSet), kernel, pool).best(bestTwo);
+    }
+
+    /**
+     * Reports whether the pair ({@code str0}, {@code str1}) comes before the
+     * pair in {@code bestTwo}, comparing first strings, then second strings.
+     *
+     * @param str0
+     *            first string of the pair
+     * @param str1
+     *            second string of the pair
+     * @param bestTwo
+     *            the other pair
+     * @return true iff ({@code str0}, {@code str1}) comes first
+     * @requires bestTwo.length >= 2
+     */
+    private static boolean precedes(String str0, String str1,
+            String[] bestTwo) {
+        int c = str0.compareTo(bestTwo[0]);
+        if (c == 0) {
+            c = str1.compareTo(bestTwo[1]);
+        }
+        return c < 0;
     }
 
     /**
@@ -306,6 +563,10 @@ public final class StringReassembly {
      * only strings that have no overlap between a suffix of one string and a
      * prefix of another. Note: uses a "greedy approach" to assembly, hence may
      * not result in {@code strSet} being as small a set as possible at the end.
+     * The merges are those of the rescanning loop (repeatedly merge the pair
+     * {@code bestOverlap} picks), made by a {@code GreedyAssembler}, which
+     * keeps candidate merges in a heap and after each merge only computes the
+     * overlaps of the new string.
      *
      * @param strSet
      *            set of strings
@@ -323,13 +584,151 @@ public final class StringReassembly {
         /*
          * Note: Precondition not checked!
          */
+        GreedyAssembler assembler = new GreedyAssembler(toArray(strSet));
+        assembler.run();
+        strSet.clear();
+        for (String str : assembler.result()) {
+            strSet.add(str);
+        }
+    }
+
+    /**
+     * Combines strings in {@code strSet} into contigs along a best-overlap
+     * graph, built by an {@code OverlapGraphAssembler}: two strings are merged
+     * when their overlap, of at least {@code minOverlap} characters, is the
+     * longest out of the first and the longest into the second. This takes
+     * time about linear in the total length of the strings, but unlike
+     * {@link #assemble(Set)} it leaves strings unmerged whose best overlaps
+     * conflict, and ignores overlaps shorter than {@code minOverlap}. The
+     * contigs keep any '~' line separators of the strings, ready for
+     * {@link #printWithLineSeparators(String, SimpleWriter)}.
+     *
+     * @param strSet
+     *            set of strings
+     * @param minOverlap
+     *            shortest overlap merged, and the number of leading characters
+     *            the overlaps are looked up by
+     * @updates strSet
+     * @requires <pre>
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * 1 <= minOverlap
+     * </pre>
+     * @ensures <pre>
+     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
+     * |strSet| <= |#strSet|
+     * </pre>
+     */
+    public static void assembleByOverlapGraph(Set<String> strSet,
+            int minOverlap) {
+        assert strSet != null : "Violation of: strSet is not null";
+        assert 1 <= minOverlap : "Violation of: 1 <= minOverlap";
+        /*
+         * Note: Rest of precondition not checked!
+         */
+        OverlapGraphAssembler assembler = new OverlapGraphAssembler(
+                toArray(strSet), minOverlap);
+        strSet.clear();
+        for (String contig : assembler.contigs()) {
+            if (!strSet.contains(contig)) {
+                strSet.add(contig);
+            }
+        }
+    }
+
+    /**
+     * Combines strings in {@code strSet} as much as possible, leaving in it
+     * only strings that have no overlap between a suffix of one string and a
+     * prefix of another. Note: uses a "greedy approach" to assembly, hence may
+     * not result in {@code strSet} being as small a set as possible at the end.
+     * This is the reference greedy loop, which finds the best pair anew after
+     * every merge; {@link #assemble(Set)} makes the same merges faster.
+     *
+     * @param strSet
+     *            set of strings
+     * @updates strSet
+     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet)
+     * @ensures <pre>
+     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
+     * |strSet| <= |#strSet|  and
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * CONTAINS_NO_OVERLAPPING_PAIRS(strSet)
+     * </pre>
+     */
+    static void assembleByRescanning(Set<String> strSet) {
+        assert strSet != null : "Violation of: strSet is not null";
+        /*
+         * Note: Precondition not checked!
+         */
+        rescan(strSet, null);
+    }
+
+    /**
+     * Combines strings in {@code strSet} as much as possible, leaving in it
+     * only strings that have no overlap between a suffix of one string and a
+     * prefix of another. Note: uses a "greedy approach" to assembly, hence may
+     * not result in {@code strSet} being as small a set as possible at the end.
+     * Makes the merges {@link #assemble(Set)} makes, but finds the best pair
+     * anew after every merge, comparing all pairs in parallel on {@code pool}
+     * with the linear-time prefix-function kernel; the result does not depend
+     * on the parallelism of {@code pool}. Rescanning all n^2 pairs after each
+     * of up to n merges takes O(n^3 L) work for n strings of length L, so
+     * for large n this is slower than {@link #assemble(Set)} on any number of
+     * cores; it serves as a parallel reference for that method.
+     *
+     * @param strSet
+     *            set of strings
+     * @param pool
+     *            pool to compare the pairs on
+     * @updates strSet
+     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet)
+     * @ensures <pre>
+     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
+     * |strSet| <= |#strSet|  and
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * CONTAINS_NO_OVERLAPPING_PAIRS(strSet)
+     * </pre>
+     */
+    public static void assemble(Set<String> strSet, ForkJoinPool pool) {
+        assert strSet != null : "Violation of: strSet is not null";
+        assert pool != null : "Violation of: pool is not null";
+        /*
+         * Note: Precondition not checked!
+         */
+        rescan(strSet, pool);
+    }
+
+    /**
+     * The reference greedy loop: merges the best pair of {@code strSet}
+     * until no two strings overlap, finding the best pair anew each time.
+     *
+     * @param strSet
+     *            set of strings
+     * @param pool
+     *            pool to compare the pairs on, or null to find the best pair
+     *            with an {@code OverlapIndex}
+     * @updates strSet
+     * @requires CONTAINS_NO_SUBSTRING_PAIRS(strSet)
+     * @ensures <pre>
+     * ALL_SUPERSTRINGS(strSet) is subset of ALL_SUPERSTRINGS(#strSet)  and
+     * |strSet| <= |#strSet|  and
+     * CONTAINS_NO_SUBSTRING_PAIRS(strSet)  and
+     * CONTAINS_NO_OVERLAPPING_PAIRS(strSet)
+     * </pre>
+     */
+    private static void rescan(Set<String> strSet, ForkJoinPool pool) {
         /*
          * Combine strings as much possible, being greedy
          */
         boolean done = false;
         while ((strSet.size() > 1) && !done) {
             String[] bestTwo = new String[2];
-            int bestOverlap = bestOverlap(strSet, bestTwo);
+            int bestOverlap;
+            if (pool == null) {
+                bestOverlap = bestOverlap(strSet, bestTwo);
+            } else {
+                bestOverlap = bestOverlap(strSet, bestTwo,
+                        OverlapKernel.PREFIX_FUNCTION, pool);
+            }
             if (bestOverlap == 0) {
                 /*
                  * No overlapping strings remain; can't do any more
@@ -0,0 +1,444 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental index of a set of strings, none of them a substring of another,
+ * that decides containment both ways as strings are added: whether a new
+ * string is a substring of one already present, and which strings present are
+ * substrings of the new one.
+ *
+ * <p>
+ * The first question is answered by sampled k-mer indexes of the strings
+ * present, one per level: the SEED_LENGTHS[level] characters starting at
+ * every SAMPLE_STEPS[level]-th position of each string, keyed by their
+ * polynomial hash. If the new string occurs in a string present, one of its
+ * first SAMPLE_STEPS[level] positions lines up with a sampled position, so
+ * its SEED_LENGTHS[level] characters there are looked up and each hit is
+ * verified with {@link String#startsWith(String, int)}. The level used is the
+ * first (with the longest, most selective seeds) the new string is long
+ * enough for; a level is only built once a string needs it, so short seeds
+ * cost nothing while all strings are long. A new string too short for every
+ * level (under MIN_SEEDED_LENGTH characters) is instead searched for in every
+ * string present.
+ *
+ * <p>
+ * The second question is answered by a hash index of the strings present,
+ * keyed by a polynomial hash of their first PREFIX_LENGTH characters (or of
+ * the whole string, if shorter). The new string is hashed at every position,
+ * once per prefix length in use, and each hit is verified the same way.
+ *
+ * <p>
+ * Both indexes take memory proportional to the total length of the strings
+ * present: a few dozen bytes per string and per seed, one seed every
+ * SAMPLE_STEPS[level] characters per level built. Entries of dropped strings
+ * are skipped until the dropped strings make up more than half of the total
+ * length indexed; both indexes are then rebuilt from the strings present
+ * only.
+ *
+ * @author Kierra Smith
+ *
+ */
+final class SubstringIndex {
+
+    /**
+     * Marks the absence of a string or seed.
+     */
+    private static final int NONE = HashIndex.NONE;
+
+    /**
+     * Number of leading characters the prefix index is keyed by.
+     */
+    private static final int PREFIX_LENGTH = 12;
+
+    /**
+     * Number of characters of a seed of the k-mer index of each level.
+     */
+    private static final int[] SEED_LENGTHS = { 12, 6, 4 };
+
+    /**
+     * Distance between the starts of successive seeds of a string, at each
+     * level.
+     */
+    private static final int[] SAMPLE_STEPS = { 8, 4, 2 };
+
+    /**
+     * Number of levels.
+     */
+    private static final int LEVELS = SEED_LENGTHS.length;
+
+    /**
+     * Shortest string looked up in the k-mer index of the last level rather
+     * than searched for in every string present.
+     */
+    private static final int MIN_SEEDED_LENGTH = SEED_LENGTHS[LEVELS - 1]
+            + SAMPLE_STEPS[LEVELS - 1] - 1;
+
+    /**
+     * Initial capacity of the arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Strings indexed, in the order they were added; null once dropped.
+     */
+    private List<String> strings = new ArrayList<>();
+
+    /**
+     * Number of strings present.
+     */
+    private int size = 0;
+
+    /**
+     * Total length of the strings present.
+     */
+    private long presentLength = 0;
+
+    /**
+     * Total length of the strings indexed and since dropped.
+     */
+    private long droppedLength = 0;
+
+    /**
+     * First string with each key of its leading characters (then chained
+     * through nextWithPrefix).
+     */
+    private HashIndex byPrefix;
+
+    /**
+     * Next string after each one with the same key, or NONE.
+     */
+    private int[] nextWithPrefix;
+
+    /**
+     * Number of strings present keyed by each number of leading characters.
+     */
+    private int[] prefixLengthCount;
+
+    /**
+     * First seed of each level with each hash (then chained through
+     * seedNext), or null for a level not built.
+     */
+    private final HashIndex[] bySeed = new HashIndex[LEVELS];
+
+    /**
+     * Number of seeds, of all levels.
+     */
+    private int seeds;
+
+    /**
+     * String of each seed.
+     */
+    private int[] seedString;
+
+    /**
+     * Start of each seed in its string.
+     */
+    private int[] seedStart;
+
+    /**
+     * Next seed after each one with the same hash, or NONE.
+     */
+    private int[] seedNext;
+
+    /**
+     * HashIndex.power of each number of leading characters.
+     */
+    private final long[] power = new long[PREFIX_LENGTH + 1];
+
+    /**
+     * HashIndex.power of the seed length of each level.
+     */
+    private final long[] seedPower = new long[LEVELS];
+
+    /**
+     * No-argument constructor.
+     */
+    SubstringIndex() {
+        for (int m = 0; m <= PREFIX_LENGTH; m++) {
+            this.power[m] = HashIndex.power(m);
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            this.seedPower[level] = HashIndex.power(SEED_LENGTHS[level]);
+        }
+        this.clearIndexes(INITIAL_CAPACITY);
+        this.bySeed[0] = new HashIndex(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the first level whose seeds a string of the given length is
+     * long enough to be looked up by.
+     *
+     * @param length
+     *            the length of the string
+     * @return the level, or NONE if length < MIN_SEEDED_LENGTH
+     */
+    private static int level(int length) {
+        int level = 0;
+        while (level < LEVELS
+                && length < SEED_LENGTHS[level] + SAMPLE_STEPS[level] - 1) {
+            level++;
+        }
+        if (level == LEVELS) {
+            level = NONE;
+        }
+        return level;
+    }
+
+    /**
+     * Empties both indexes, sized for about count strings, keeping the same
+     * levels built.
+     *
+     * @param count
+     *            the number of strings expected
+     */
+    private void clearIndexes(int count) {
+        this.byPrefix = new HashIndex(count);
+        this.nextWithPrefix = new int[Math.max(count, INITIAL_CAPACITY)];
+        this.prefixLengthCount = new int[PREFIX_LENGTH + 1];
+        for (int level = 0; level < LEVELS; level++) {
+            if (this.bySeed[level] != null) {
+                this.bySeed[level] = new HashIndex(count);
+            }
+        }
+        this.seeds = 0;
+        this.seedString = new int[INITIAL_CAPACITY];
+        this.seedStart = new int[INITIAL_CAPACITY];
+        this.seedNext = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the key of the prefix index for a string whose first m
+     * characters hash to hash.
+     *
+     * @param hash
+     *            the hash
+     * @param m
+     *            the number of characters hashed
+     * @return the key
+     */
+    private static long key(long hash, int m) {
+        return HashIndex.append(hash, m);
+    }
+
+    /**
+     * Adds string id to the k-mer index of level.
+     *
+     * @param id
+     *            position of the string in strings
+     * @param level
+     *            the level, which is built
+     */
+    private void indexSeeds(int id, int level) {
+        String str = this.strings.get(id);
+        int seedLength = SEED_LENGTHS[level];
+        int step = SAMPLE_STEPS[level];
+        for (int p = 0; p + seedLength <= str.length(); p += step) {
+            if (this.seeds == this.seedNext.length) {
+                int capacity = 2 * this.seeds;
+                this.seedString = Arrays.copyOf(this.seedString, capacity);
+                this.seedStart = Arrays.copyOf(this.seedStart, capacity);
+                this.seedNext = Arrays.copyOf(this.seedNext, capacity);
+            }
+            int s = this.seeds;
+            this.seeds++;
+            this.seedString[s] = id;
+            this.seedStart[s] = p;
+            this.seedNext[s] = this.bySeed[level]
+                    .put(HashIndex.hash(str, p, seedLength), s);
+        }
+    }
+
+    /**
+     * Adds string id to both indexes, at every level built.
+     *
+     * @param id
+     *            position of the string in strings
+     */
+    private void index(int id) {
+        String str = this.strings.get(id);
+        int m = Math.min(str.length(), PREFIX_LENGTH);
+        if (id == this.nextWithPrefix.length) {
+            this.nextWithPrefix = Arrays.copyOf(this.nextWithPrefix, 2 * id);
+        }
+        this.nextWithPrefix[id] = this.byPrefix
+                .put(key(HashIndex.hash(str, 0, m), m), id);
+        this.prefixLengthCount[m]++;
+        for (int level = 0; level < LEVELS; level++) {
+            if (this.bySeed[level] != null) {
+                this.indexSeeds(id, level);
+            }
+        }
+    }
+
+    /**
+     * Builds the k-mer index of level from the strings present.
+     *
+     * @param level
+     *            the level, which is not built
+     */
+    private void buildLevel(int level) {
+        this.bySeed[level] = new HashIndex(this.size);
+        for (int id = 0; id < this.strings.size(); id++) {
+            if (this.strings.get(id) != null) {
+                this.indexSeeds(id, level);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds both indexes from the strings present only.
+     */
+    private void compact() {
+        List<String> present = this.strings();
+        this.strings = present;
+        this.droppedLength = 0;
+        this.clearIndexes(present.size());
+        for (int id = 0; id < present.size(); id++) {
+            this.index(id);
+        }
+    }
+
+    /**
+     * Drops every string present that is a substring of str.
+     *
+     * @param str
+     *            the string
+     * @param prefix
+     *            the hashes of the prefixes of str
+     */
+    private void removeSubstringsOf(String str, long[] prefix) {
+        for (int m = 0; m <= PREFIX_LENGTH; m++) {
+            for (int p = 0; p + m <= str.length()
+                    && this.prefixLengthCount[m] > 0; p++) {
+                long hash = HashIndex.window(prefix, p, m, this.power[m]);
+                int id = this.byPrefix.get(key(hash, m));
+                while (id != NONE) {
+                    String t = this.strings.get(id);
+                    if (t != null && str.startsWith(t, p)) {
+                        this.remove(id);
+                    }
+                    id = this.nextWithPrefix[id];
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops string id, which is present, from the strings present.
+     *
+     * @param id
+     *            position of the string in strings
+     */
+    private void remove(int id) {
+        String str = this.strings.set(id, null);
+        this.size--;
+        this.presentLength -= str.length();
+        this.droppedLength += str.length();
+        this.prefixLengthCount[Math.min(str.length(), PREFIX_LENGTH)]--;
+    }
+
+    /**
+     * Reports whether str is a substring of a string present.
+     *
+     * @param str
+     *            the string
+     * @param prefix
+     *            the hashes of the prefixes of str
+     * @return true iff str is a substring of a string present
+     */
+    private boolean isContained(String str, long[] prefix) {
+        boolean found = false;
+        int level = level(str.length());
+        if (level != NONE) {
+            if (this.bySeed[level] == null) {
+                this.buildLevel(level);
+            }
+            for (int q = 0; q < SAMPLE_STEPS[level] && !found; q++) {
+                int s = this.bySeed[level].get(HashIndex.window(prefix, q,
+                        SEED_LENGTHS[level], this.seedPower[level]));
+                while (s != NONE && !found) {
+                    String t = this.strings.get(this.seedString[s]);
+                    int offset = this.seedStart[s] - q;
+                    found = t != null && offset >= 0
+                            && t.startsWith(str, offset);
+                    s = this.seedNext[s];
+                }
+            }
+        } else {
+            for (int id = 0; id < this.strings.size() && !found; id++) {
+                String t = this.strings.get(id);
+                found = t != null && t.contains(str);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reports whether str is a substring of a string present.
+     *
+     * @param str
+     *            the string
+     * @return true iff str is a substring of a string present
+     */
+    boolean isContained(String str) {
+        assert str != null : "Violation of: str is not null";
+        return this.isContained(str, HashIndex.prefixHashes(str));
+    }
+
+    /**
+     * Adds str if it is not a substring of a string present, dropping the
+     * strings present that are substrings of it.
+     *
+     * @param str
+     *            the string
+     * @return true iff str was added
+     * @updates this
+     * @ensures <pre>
+     * if SUPERSTRINGS(#this, str) = {}
+     *  then this = #this union {str} \ SUBSTRINGS(#this, str)
+     *  else this = #this
+     * </pre>
+     */
+    boolean add(String str) {
+        assert str != null : "Violation of: str is not null";
+        long[] prefix = HashIndex.prefixHashes(str);
+        boolean added = !this.isContained(str, prefix);
+        if (added) {
+            this.removeSubstringsOf(str, prefix);
+            if (this.droppedLength > this.presentLength) {
+                this.compact();
+            }
+            this.strings.add(str);
+            this.size++;
+            this.presentLength += str.length();
+            this.index(this.strings.size() - 1);
+        }
+        return added;
+    }
+
+    /**
+     * Reports the number of strings present.
+     *
+     * @return the number of strings present
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the strings present, in the order they were added.
+     *
+     * @return the strings present
+     */
+    List<String> strings() {
+        List<String> present = new ArrayList<>();
+        for (String str : this.strings) {
+            if (str != null) {
+                present.add(str);
+            }
+        }
+        return present;
+    }
+
+}
@@ -1,4 +1,7 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
@@ -33,6 +36,7 @@ public class StringReassemblyTest {
                 "Sunday is my favorite day of the week and I hate Mondays ");
     }
 
+    @Test
     public void testAddToSetAvoidingSubstrings_1() {
         Set<String> temp = new Set1L<>();
         temp.add("basketball");
@@ -47,6 +51,7 @@ public class StringReassemblyTest {
         assertEquals(temp, answer);
     }
 
+    @Test
     public void testAddToSetAvoidingSubstrings_2() {
         Set<String> temp = new Set1L<>();
         temp.add("Hey");
@@ -60,4 +65,210 @@ public class StringReassemblyTest {
         StringReassembly.addToSetAvoidingSubstrings(temp, test);
         assertEquals(temp, answer);
     }
+
+    @Test
+    public void testOverlapIndex_MatchesOverlap() {
+        String[] fragments = { "abcde", "cdefg", "efgab", "gabxy", "xyz" };
+        OverlapIndex index = new OverlapIndex(fragments);
+        for (int i = 0; i < fragments.length; i++) {
+            int best = 0;
+            for (int j = 0; j < fragments.length; j++) {
+                if (i != j) {
+                    int overlap = StringReassembly.overlap(fragments[i],
+                            fragments[j]);
+                    best = Math.max(best, overlap);
+                }
+            }
+            assertEquals(best, index.bestOverlap(i));
+        }
+        String[] bestTwo = new String[2];
+        assertEquals(3, index.best(bestTwo));
+        assertEquals("abcde", bestTwo[0]);
+        assertEquals("cdefg", bestTwo[1]);
+    }
+
+    @Test
+    public void testAssemble_SingleText() {
+        String text = "the quick brown fox jumps over the lazy dog";
+        Set<String> fragments = new Set1L<>();
+        for (int i = 0; i + 12 <= text.length(); i += 7) {
+            fragments.add(text.substring(i, i + 12));
+        }
+        fragments.add(text.substring(text.length() - 12));
+        StringReassembly.assemble(fragments);
+        assertEquals(1, fragments.size());
+        assertEquals(text, fragments.removeAny());
+    }
+
+    @Test
+    public void testAssemble_MatchesRescanning() {
+        String[] pieces = { "aabab", "babba", "abbaa", "baaab", "aabba",
+            "bbaba", "ababb" };
+        Set<String> fragments = new Set1L<>();
+        Set<String> expected = new Set1L<>();
+        for (String piece : pieces) {
+            fragments.add(piece);
+            expected.add(piece);
+        }
+        StringReassembly.assembleByRescanning(expected);
+        StringReassembly.assemble(fragments);
+        assertEquals(expected, fragments);
+    }
+
+    @Test
+    public void testOverlap_KernelsAgree() {
+        String[][] pairs = { { "abcab", "cabd" }, { "aaab", "aaba" },
+            { "abab", "babb" }, { "xyz", "abc" }, { "aabaa", "baab" } };
+        int[] expected = { 3, 3, 3, 0, 3 };
+        for (int i = 0; i < pairs.length; i++) {
+            for (OverlapKernel kernel : OverlapKernel.values()) {
+                assertEquals(expected[i], StringReassembly.overlap(pairs[i][0],
+                        pairs[i][1], kernel));
+            }
+        }
+        Set<String> fragments = new Set1L<>();
+        fragments.add("abcde");
+        fragments.add("cdefg");
+        fragments.add("efgab");
+        fragments.add("gabxy");
+        String[] bestTwo = new String[2];
+        assertEquals(3, StringReassembly.bestOverlap(fragments, bestTwo,
+                OverlapKernel.PREFIX_FUNCTION));
+        assertEquals("abcde", bestTwo[0]);
+        assertEquals("cdefg", bestTwo[1]);
+    }
+
+    @Test
+    public void testSubstringIndex_MatchesAddToSet() {
+        String[] lines = { "ball", "basketball", "baseball", "sketch", "ket",
+            "all", "baseballs", "", "sketchbook", "ball", "a" };
+        SubstringIndex index = new SubstringIndex();
+        Set<String> expected = new Set1L<>();
+        for (String line : lines) {
+            boolean covered = index.isContained(line);
+            assertEquals(!covered, index.add(line));
+            StringReassembly.addToSetAvoidingSubstrings(expected, line);
+            assertEquals(expected.size(), index.size());
+            for (String str : index.strings()) {
+                assertTrue(expected.contains(str));
+            }
+        }
+    }
+
+    @Test
+    public void testSubstringIndex_LongLinesMatchAddToSet() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            text.append(Integer.toString(i * i, 7));
+        }
+        SubstringIndex index = new SubstringIndex();
+        Set<String> expected = new Set1L<>();
+        for (int length = 20; length <= 90; length += 35) {
+            for (int start = 0; start + length <= text.length(); start += 5) {
+                String line = text.substring(start, start + length);
+                assertEquals(!index.isContained(line), index.add(line));
+                StringReassembly.addToSetAvoidingSubstrings(expected, line);
+                assertEquals(expected.size(), index.size());
+            }
+        }
+        for (String str : index.strings()) {
+            assertTrue(expected.contains(str));
+        }
+        assertTrue(index.isContained(text.substring(7, 30)));
+        assertEquals(false, index.add(text.substring(3, 40)));
+    }
+
+    @Test
+    public void testSubstringIndex_ShortLinesMatchAddToSet() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append(Integer.toString(i * i, 5));
+        }
+        SubstringIndex index = new SubstringIndex();
+        Set<String> expected = new Set1L<>();
+        for (int length = 13; length >= 3; length -= 2) {
+            for (int start = 0; start + length <= text.length(); start += 3) {
+                String line = text.substring(start, start + length);
+                assertEquals(!index.isContained(line), index.add(line));
+                StringReassembly.addToSetAvoidingSubstrings(expected, line);
+                assertEquals(expected.size(), index.size());
+            }
+        }
+        for (String str : index.strings()) {
+            assertTrue(expected.contains(str));
+        }
+        assertTrue(index.isContained(text.substring(4, 12)));
+        assertEquals(false, index.add(text.substring(10, 16)));
+    }
+
+    @Test
+    public void testBestOverlap_ParallelMatchesIndex() {
+        Set<String> fragments = new Set1L<>();
+        String[] strings = new String[150];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = Integer.toBinaryString(i + 512);
+            fragments.add(strings[i]);
+        }
+        String[] expected = new String[2];
+        int overlap = new OverlapIndex(strings).best(expected);
+        for (int threads = 1; threads <= 3; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            String[] bestTwo = new String[2];
+            assertEquals(overlap, StringReassembly.bestOverlap(fragments,
+                    bestTwo, OverlapKernel.PREFIX_FUNCTION, pool));
+            assertEquals(expected[0], bestTwo[0]);
+            assertEquals(expected[1], bestTwo[1]);
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testAssembleByOverlapGraph_SingleText() {
+        String text = "the quick brown fox~jumps over the lazy dog~again";
+        Set<String> fragments = new Set1L<>();
+        for (int i = 0; i + 12 <= text.length(); i += 7) {
+            fragments.add(text.substring(i, i + 12));
+        }
+        fragments.add(text.substring(text.length() - 12));
+        StringReassembly.assembleByOverlapGraph(fragments, 4);
+        assertEquals(1, fragments.size());
+        assertEquals(text, fragments.removeAny());
+    }
+
+    @Test
+    public void testCombination_RopeMatchesString() {
+        String[] pieces = { "Sunday is my", " my favorite", "favorite day",
+            "day of the week" };
+        int[] overlaps = { 3, 8, 3 };
+        String text = pieces[0];
+        Rope rope = Rope.of(pieces[0]);
+        for (int i = 1; i < pieces.length; i++) {
+            text = StringReassembly.combination(text, pieces[i],
+                    overlaps[i - 1]);
+            rope = StringReassembly.combination(rope, Rope.of(pieces[i]),
+                    overlaps[i - 1]);
+        }
+        assertEquals(text, rope.toString());
+        assertEquals(text.length(), rope.length());
+        assertEquals("Sunday", rope.prefix(6).toString());
+        assertEquals("the week", rope.suffix(8).toString());
+        assertEquals("favorite", rope.subSequence(13, 21).toString());
+    }
+
+    @Test
+    public void testAssemble_ParallelMatchesHeap() {
+        String[] pieces = { "aabab", "babba", "abbaa", "baaab", "aabba",
+            "bbaba", "ababb" };
+        Set<String> fragments = new Set1L<>();
+        Set<String> expected = new Set1L<>();
+        for (String piece : pieces) {
+            fragments.add(piece);
+            expected.add(piece);
+        }
+        StringReassembly.assemble(expected);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        StringReassembly.assemble(fragments, pool);
+        pool.shutdown();
+        assertEquals(expected, fragments);
+    }
 }